@@ -0,0 +1,26 @@
+package com.db.kurs.orm.annotation;
+
+import com.db.kurs.orm.repository.factory.ConcurrencyLimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Ограничение одновременных вызовов: на интерфейсе репозитория — общее для всех его методов,
+ * на методе — только для него (действуют оба). Лишние вызовы ждут в честной очереди
+ * не дольше maxWaitMillis, затем получают BulkheadFullException.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Bulkhead {
+    /** одновременных вызовов (при адаптивном режиме — начальный лимит) */
+    int maxConcurrent();
+
+    /** сколько ждать свободного места, мс; 0 — не ждать */
+    long maxWaitMillis() default 1000;
+
+    /** подстройка лимита по задержкам */
+    ConcurrencyLimit.Mode mode() default ConcurrencyLimit.Mode.FIXED;
+}
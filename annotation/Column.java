@@ -1,5 +1,7 @@
 package com.db.kurs.orm.annotation;
 
+import com.db.kurs.orm.annotation.link.FetchType;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -9,4 +11,10 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 public @interface Column {
     String name() default "";
-}
\ No newline at end of file
+
+    /**
+     * LAZY — колонка не входит в генерируемые SELECT и читается при первом обращении.
+     * Поле такой колонки должно иметь тип LazyValue&lt;byte[]&gt; или LazyValue&lt;String&gt;.
+     */
+    FetchType fetch() default FetchType.EAGER;
+}
@@ -0,0 +1,17 @@
+package com.db.kurs.orm.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Конструктор, через который EntityMapper создаёт сущность вместо конструктора без аргументов
+ * и записи полей. Параметры сопоставляются с полями по имени (нужна компиляция с -parameters);
+ * поля, которых нет среди параметров, заполняются после создания, как у обычной сущности.
+ * У record'а аннотация не нужна: используется канонический конструктор.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.CONSTRUCTOR)
+public @interface EntityConstructor {
+}
@@ -0,0 +1,23 @@
+package com.db.kurs.orm.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Граф загрузки для метода репозитория (@Query, findById, findAll...).
+ * Перекрывает FetchType сущностей только для этого вызова.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface FetchGraph {
+    /**
+     * Пути связей от корня через точку, например {"books", "books.author"}.
+     * Если заданы — грузятся ровно они (в том числе LAZY), иначе — EAGER-связи сущностей.
+     */
+    String[] value() default {};
+
+    /** Максимальная глубина связей; 0 — только корни, -1 — без ограничения */
+    int maxDepth() default -1;
+}
@@ -0,0 +1,24 @@
+package com.db.kurs.orm.annotation;
+
+import com.db.kurs.orm.repository.Deadline;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Бюджет времени на вызов метода репозитория (@Query, findById, findAll...).
+ * Остаток бюджета ставится JDBC query timeout'ом каждому запросу вызова; по истечении
+ * выполняемый запрос отменяется, а оставшиеся загрузки связей прерываются или пропускаются.
+ * Внутри Deadline-scope действует более ранний из двух сроков.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Timeout {
+    /** бюджет, мс */
+    long value();
+
+    /** что делать с незагруженными связями, когда срок вышел */
+    Deadline.Expiry onExpiry() default Deadline.Expiry.ABORT;
+}
@@ -0,0 +1,15 @@
+package com.db.kurs.orm.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Счётчик версии для оптимистической блокировки (int / long).
+ * INSERT записывает 1, UPDATE проверяет версию в WHERE и увеличивает её на 1.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Version {
+}
@@ -0,0 +1,141 @@
+package com.db.kurs.orm.mapper;
+
+import com.db.kurs.orm.annotation.EntityConstructor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.RecordComponent;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Создание сущности через конструктор: канонический у record'а или помеченный @EntityConstructor.
+ * Конструктор вызывается через закэшированный MethodHandle с массивом аргументов —
+ * по одному на поле из getFields(); null для примитивного параметра заменяется нулём / false.
+ * Такую сущность EntityMapper собирает целиком из строки, её можно отдавать нескольким
+ * потокам и кэшам без копий.
+ */
+public final class EntityInstantiator {
+    private static final Map<Class<?>, Optional<EntityInstantiator>> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<?> type;
+    private final MethodHandle constructor;   // (Object[]) -> Object
+    private final Field[] fields;             // поле каждого параметра
+    private final Object[] defaults;          // аргумент вместо null: 0 / false для примитивов
+
+    private EntityInstantiator(Class<?> type, Constructor<?> ctor, Field[] fields) throws IllegalAccessException {
+        ctor.setAccessible(true);
+        this.type = type;
+        MethodHandle handle = MethodHandles.lookup().unreflectConstructor(ctor);
+        this.constructor = handle.asType(handle.type().generic()).asSpreader(Object[].class, fields.length);
+        this.fields = fields;
+        this.defaults = new Object[fields.length];
+        Class<?>[] params = ctor.getParameterTypes();
+        for (int i = 0; i < params.length; i++) {
+            if (params[i].isPrimitive()) defaults[i] = Array.get(Array.newInstance(params[i], 1), 0);
+        }
+    }
+
+    /** @return instantiator типа или null — тип создаётся конструктором без аргументов */
+    public static EntityInstantiator of(Class<?> type) {
+        return CACHE.computeIfAbsent(type, t -> Optional.ofNullable(create(t))).orElse(null);
+    }
+
+    private static EntityInstantiator create(Class<?> type) {
+        try {
+            if (type.isRecord()) {
+                RecordComponent[] components = type.getRecordComponents();
+                Class<?>[] types = new Class<?>[components.length];
+                Field[] fields = new Field[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    types[i] = components[i].getType();
+                    fields[i] = type.getDeclaredField(components[i].getName());
+                    fields[i].setAccessible(true);
+                }
+                return new EntityInstantiator(type, type.getDeclaredConstructor(types), fields);
+            }
+            Constructor<?> marked = null;
+            for (Constructor<?> c : type.getDeclaredConstructors()) {
+                if (!c.isAnnotationPresent(EntityConstructor.class)) continue;
+                if (marked != null) {
+                    throw new IllegalArgumentException("More than one @EntityConstructor in " + type.getName());
+                }
+                marked = c;
+            }
+            if (marked == null) return null;
+            Parameter[] params = marked.getParameters();
+            Field[] fields = new Field[params.length];
+            for (int i = 0; i < params.length; i++) {
+                if (!params[i].isNamePresent()) {
+                    throw new IllegalArgumentException("@EntityConstructor of " + type.getName()
+                            + " needs parameter names: compile with -parameters");
+                }
+                Field f = type.getDeclaredField(params[i].getName());
+                if (!f.getType().equals(params[i].getType())) {
+                    throw new IllegalArgumentException("@EntityConstructor parameter " + params[i].getName()
+                            + " of " + type.getName() + " does not match field type " + f.getType().getName());
+                }
+                f.setAccessible(true);
+                fields[i] = f;
+            }
+            return new EntityInstantiator(type, marked, fields);
+        } catch (NoSuchFieldException ex) {
+            throw new IllegalArgumentException("@EntityConstructor parameter without a field of the same name in "
+                    + type.getName() + ": " + ex.getMessage());
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException("Cannot use constructor of " + type.getName() + ": " + ex.getMessage());
+        }
+    }
+
+    /** поля, по одному на параметр конструктора, в порядке параметров */
+    public Field[] getFields() {
+        return fields.clone();
+    }
+
+    public int getParameterCount() {
+        return fields.length;
+    }
+
+    /** индекс параметра поля или -1 */
+    public int indexOf(Field field) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(field)) return i;
+        }
+        return -1;
+    }
+
+    /** @param args значения по индексу getFields(); массив изменяется (null примитивов → 0) */
+    public Object newInstance(Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) args[i] = defaults[i];
+        }
+        try {
+            return (Object) constructor.invokeExact(args);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Constructor of " + type.getName() + " failed", ex);
+        }
+    }
+
+    /** сущность, у которой задано только поле idField (stub @ManyToOne) */
+    public Object stub(Field idField, Object id) {
+        Object[] args = new Object[fields.length];
+        int i = indexOf(idField);
+        if (i >= 0) args[i] = id;
+        Object stub = newInstance(args);
+        if (i < 0) {
+            try {
+                idField.set(stub, id);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException("Cannot set id of " + type.getName(), ex);
+            }
+        }
+        return stub;
+    }
+}
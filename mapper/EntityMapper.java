@@ -14,15 +14,32 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.*;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class EntityMapper {
     private final Map<Class<?>, Map<String, Field>> cache = new java.util.HashMap<>();
+    /** раскладки строки для сущностей, создаваемых конструктором (record, @EntityConstructor) */
+    private final Map<Class<?>, ConstructorPlan> constructorPlans = new ConcurrentHashMap<>();
+
+    /** откуда берётся значение поля: столбец (для stub — FK) или ничего (null) */
+    private record Slot(Field field, String column, boolean stub) {
+    }
+
+    /** аргументы конструктора по порядку и поля вне конструктора (заполняются после создания) */
+    private record ConstructorPlan(EntityInstantiator instantiator, Slot[] args, List<Slot> rest) {
+    }
 
     public <T> T map(ResultSet rs, Class<T> clazz) {
+        EntityInstantiator instantiator = EntityInstantiator.of(clazz);
+        if (instantiator != null) {
+            return clazz.cast(mapByConstructor(rs, clazz, instantiator));
+        }
         try {
             T entity = clazz.getDeclaredConstructor().newInstance();
             EntityMetadata meta = new EntityMetadata(clazz);
@@ -57,14 +74,7 @@ public class EntityMapper {
                 if (rawFk == null) {
                     rel.field.set(entity, null);
                 } else {
-                    Class<?> target = rel.field.getType();
-                    Object stub = target.getDeclaredConstructor().newInstance();
-                    EntityMetadata tm = new EntityMetadata(target);
-                    Field tid = tm.idFields.get(0);
-                    Object idVal = convertValueToFieldType(rawFk, tid.getType());
-                    tid.setAccessible(true);
-                    tid.set(stub, idVal);
-                    rel.field.set(entity, stub);
+                    rel.field.set(entity, stub(rel.field.getType(), rawFk));
                 }
             }
 
@@ -76,7 +86,78 @@ public class EntityMapper {
         }
     }
 
-    private Object convertValueToFieldType(Object value, Class<?> targetType) {
+    /**
+     * Сущность с конструктором: все значения строки читаются в массив аргументов,
+     * объект создаётся одним вызовом конструктора; поля вне конструктора дописываются после.
+     */
+    private Object mapByConstructor(ResultSet rs, Class<?> clazz, EntityInstantiator instantiator) {
+        ConstructorPlan plan = constructorPlans.computeIfAbsent(clazz, t -> constructorPlan(t, instantiator));
+        try {
+            Object[] args = new Object[plan.args.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = read(rs, plan.args[i]);
+            }
+            Object entity = instantiator.newInstance(args);
+            for (Slot slot : plan.rest) {
+                slot.field.set(entity, read(rs, slot));
+            }
+            return entity;
+        } catch (SQLException ex) {
+            throw new RuntimeException("Ошибка чтения из ResultSet", ex);
+        } catch (Exception ex) {
+            throw new RuntimeException("Ошибка маппинга " + clazz.getSimpleName(), ex);
+        }
+    }
+
+    private Object read(ResultSet rs, Slot slot) throws Exception {
+        if (slot.column == null) return null;
+        Object raw = rs.getObject(slot.column);
+        if (raw == null) return null;
+        return slot.stub ? stub(slot.field.getType(), raw) : convertValueToFieldType(raw, slot.field.getType());
+    }
+
+    /** те же поля, что заполняет map для обычной сущности: @Id, @Column, stub @ManyToOne */
+    private static ConstructorPlan constructorPlan(Class<?> type, EntityInstantiator instantiator) {
+        EntityMetadata meta = new EntityMetadata(type);
+        if (!meta.lazyColumns.isEmpty()) {
+            throw new IllegalArgumentException("Lazy columns are not supported with constructor mapping: " + type.getName());
+        }
+        Map<Field, Slot> slots = new LinkedHashMap<>();
+        for (int i = 0; i < meta.idFields.size(); i++) {
+            Field f = meta.idFields.get(i);
+            // stub-ссылка в составном ключе загружается RelationQueryExecutor'ом
+            if (!f.isAnnotationPresent(ManyToOne.class)) slots.put(f, new Slot(f, meta.idColumns.get(i), false));
+        }
+        meta.columns.forEach((col, f) -> slots.put(f, new Slot(f, col, false)));
+        for (RelationshipMetadata rel : meta.relations) {
+            if (rel.type == RelationshipMetadata.RelationType.MANY_TO_ONE && !slots.containsKey(rel.field)) {
+                slots.put(rel.field, new Slot(rel.field, rel.joinColumns.get(0).name(), true));
+            }
+        }
+        Field[] params = instantiator.getFields();
+        Slot[] args = new Slot[params.length];
+        for (int i = 0; i < params.length; i++) {
+            Slot slot = slots.remove(params[i]);
+            args[i] = slot != null ? slot : new Slot(params[i], null, false);   // связи и прочее — null
+        }
+        return new ConstructorPlan(instantiator, args, new ArrayList<>(slots.values()));
+    }
+
+    /** stub @ManyToOne: сущность target, у которой задан только @Id */
+    private Object stub(Class<?> target, Object rawFk) throws ReflectiveOperationException {
+        EntityMetadata tm = new EntityMetadata(target);
+        Field tid = tm.idFields.get(0);
+        Object idVal = convertValueToFieldType(rawFk, tid.getType());
+        EntityInstantiator instantiator = EntityInstantiator.of(target);
+        if (instantiator != null) return instantiator.stub(tid, idVal);
+        Object stub = target.getDeclaredConstructor().newInstance();
+        tid.setAccessible(true);
+        tid.set(stub, idVal);
+        return stub;
+    }
+
+    /** значение из ResultSet → тип поля сущности (те же правила, что при map) */
+    public Object convertValueToFieldType(Object value, Class<?> targetType) {
         if (value == null) return null;
 
         // 1) напрямую подходящий тип
@@ -231,6 +312,8 @@ public class EntityMapper {
                         || field.isAnnotationPresent(com.db.kurs.orm.annotation.link.OneToOne.class)
                         || field.isAnnotationPresent(com.db.kurs.orm.annotation.link.ManyToOne.class)) continue;
                 Column c = field.getAnnotation(Column.class);
+                // ленивые колонки пишутся отдельно (ColumnLayout.lazyFields)
+                if (c != null && c.fetch() == com.db.kurs.orm.annotation.link.FetchType.LAZY) continue;
                 String columnName = (c != null && !c.name().isEmpty())
                         ? c.name().toLowerCase()
                         : field.getName().toLowerCase();
@@ -3,6 +3,8 @@ package com.db.kurs.orm.metadata;
 import com.db.kurs.orm.annotation.Column;
 import com.db.kurs.orm.annotation.Id;
 import com.db.kurs.orm.annotation.Table;
+import com.db.kurs.orm.annotation.Version;
+import com.db.kurs.orm.annotation.link.FetchType;
 import com.db.kurs.orm.annotation.link.JoinColumn;
 import com.db.kurs.orm.annotation.link.ManyToMany;
 import com.db.kurs.orm.annotation.link.ManyToOne;
@@ -24,8 +26,13 @@ public class EntityMetadata {
     public final List<String> idColumns = new ArrayList<>();
     /** Все остальные простые колонки (name→Field) */
     public final Map<String, Field> columns = new LinkedHashMap<>();
+    /** Колонки @Column(fetch = LAZY) (name→Field): не входят в columns и в selectList() */
+    public final Map<String, Field> lazyColumns = new LinkedHashMap<>();
     /** Метаданные всех связей (@OneToMany, @ManyToOne и т.д.) */
     public final List<RelationshipMetadata> relations = new ArrayList<>();
+    /** Поле @Version (null — без оптимистической блокировки) и его столбец */
+    public final Field versionField;
+    public final String versionColumn;
 
     public EntityMetadata(Class<?> type) {
         // 1) Определяем имя таблицы
@@ -62,11 +69,25 @@ public class EntityMetadata {
                 Column c = f.getAnnotation(Column.class);
                 String name = c.name().isEmpty() ? f.getName() : c.name();
                 f.setAccessible(true);
-                columns.put(name, f);
+                (c.fetch() == FetchType.LAZY ? lazyColumns : columns).put(name, f);
             }
         }
 
-        // 4) Все связи
+        // 4) Колонка версии
+        Field version = null;
+        String versionCol = null;
+        for (Field f : type.getDeclaredFields()) {
+            if (f.isAnnotationPresent(Version.class)) {
+                f.setAccessible(true);
+                Column c = f.getAnnotation(Column.class);
+                version = f;
+                versionCol = (c != null && !c.name().isEmpty()) ? c.name() : f.getName();
+            }
+        }
+        this.versionField = version;
+        this.versionColumn = versionCol;
+
+        // 5) Все связи
         for (Field f : type.getDeclaredFields()) {
             if (f.isAnnotationPresent(OneToMany.class)
                     || f.isAnnotationPresent(ManyToMany.class)
@@ -77,4 +98,23 @@ public class EntityMetadata {
             }
         }
     }
+
+    /**
+     * Список колонок для генерируемых SELECT: "*", если ленивых колонок нет,
+     * иначе явный список (@Id, @Column, @Version, FK владеющих связей) без них.
+     */
+    public String selectList() {
+        if (lazyColumns.isEmpty()) return "*";
+        Set<String> names = new LinkedHashSet<>(idColumns);
+        names.addAll(columns.keySet());
+        if (versionColumn != null) names.add(versionColumn);
+        for (RelationshipMetadata rel : relations) {
+            boolean owner = rel.type == RelationshipMetadata.RelationType.MANY_TO_ONE
+                    || (rel.type == RelationshipMetadata.RelationType.ONE_TO_ONE
+                        && (rel.mappedBy == null || rel.mappedBy.isEmpty()));
+            if (!owner) continue;
+            for (JoinColumn jc : rel.joinColumns) names.add(jc.name());
+        }
+        return String.join(", ", names);
+    }
 }
@@ -0,0 +1,202 @@
+package com.db.kurs.orm.metadata;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.annotation.Query;
+import com.db.kurs.orm.repository.CrudRepository;
+
+import java.io.IOException;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Метаданные достижимости для GraalVM native-image: reflect-config.json и proxy-config.json.
+ * В native-образе рефлексия и динамические прокси работают только для зарегистрированных типов,
+ * а библиотека читает поля и аннотации сущностей, создаёт их конструкторами через рефлексию
+ * и строит репозитории и соединения ConnectionScope на java.lang.reflect.Proxy.
+ * <p>
+ * Сущности собираются от репозиториев: тип из CrudRepository&lt;T, ID&gt;, результаты методов @Query
+ * (элементы массивов, Collection, Stream, Optional) и, транзитивно, цели всех связей. Файлы кладутся на этапе сборки в
+ * META-INF/native-image/&lt;groupId&gt;/&lt;artifactId&gt;/ ресурсов приложения, например:
+ * <pre>
+ * java -cp ... com.db.kurs.orm.metadata.ReachabilityMetadata \
+ *     target/classes/META-INF/native-image/com.example/app com.example.BookRepository ...
+ * </pre>
+ */
+public final class ReachabilityMetadata {
+
+    /** интерфейсы прокси ConnectionScope (соединение и statement'ы области) */
+    private static final List<Class<?>> JDBC_PROXIES = List.of(
+            Connection.class, Statement.class, PreparedStatement.class, CallableStatement.class);
+
+    private final Set<Class<?>> repositories = new LinkedHashSet<>();
+    private final Set<Class<?>> entities = new LinkedHashSet<>();
+
+    /** метаданные для репозиториев и всех достижимых из них сущностей */
+    public static ReachabilityMetadata forRepositories(Class<?>... repositoryInterfaces) {
+        ReachabilityMetadata metadata = new ReachabilityMetadata();
+        for (Class<?> repository : repositoryInterfaces) metadata.addRepository(repository);
+        return metadata;
+    }
+
+    public ReachabilityMetadata addRepository(Class<?> repositoryInterface) {
+        if (!repositoryInterface.isInterface() || !CrudRepository.class.isAssignableFrom(repositoryInterface)) {
+            throw new RepositoryException(repositoryInterface.getName() + " is not a CrudRepository interface");
+        }
+        if (!repositories.add(repositoryInterface)) return this;
+        addEntity(entityType(repositoryInterface));
+        for (Method method : repositoryInterface.getMethods()) {
+            if (!method.isAnnotationPresent(Query.class)) continue;
+            Class<?> element = elementType(method.getGenericReturnType());
+            if (element != null && isEntityCandidate(element)) addEntity(element);
+        }
+        return this;
+    }
+
+    /** сущность и, транзитивно, цели её связей */
+    public ReachabilityMetadata addEntity(Class<?> entityType) {
+        Deque<Class<?>> pending = new ArrayDeque<>(List.of(entityType));
+        while (!pending.isEmpty()) {
+            Class<?> type = pending.poll();
+            if (!entities.add(type)) continue;
+            for (RelationshipMetadata rel : new EntityMetadata(type).relations) {
+                if (!entities.contains(rel.targetType)) pending.add(rel.targetType);
+            }
+        }
+        return this;
+    }
+
+    public Set<Class<?>> getRepositories() {
+        return Collections.unmodifiableSet(repositories);
+    }
+
+    public Set<Class<?>> getEntities() {
+        return Collections.unmodifiableSet(entities);
+    }
+
+    /**
+     * reflect-config.json: у сущностей — все объявленные поля и конструкторы
+     * (без аргументов, @EntityConstructor, канонический у record'а), у record'ов ещё и методы
+     * (аксессоры нужны getRecordComponents); у репозиториев — публичные методы с аннотациями
+     * и именами параметров.
+     */
+    public String reflectConfig() {
+        Map<String, String> entries = new TreeMap<>();
+        for (Class<?> type : entities) {
+            entries.put(type.getName(), entry(type.getName(),
+                    "\"allDeclaredFields\": true", "\"allDeclaredConstructors\": true",
+                    type.isRecord() ? "\"allDeclaredMethods\": true" : null));
+        }
+        Set<Class<?>> interfaces = new LinkedHashSet<>(repositories);
+        if (!repositories.isEmpty()) interfaces.add(CrudRepository.class);
+        for (Class<?> type : interfaces) {
+            entries.put(type.getName(), entry(type.getName(), "\"allPublicMethods\": true", null, null));
+        }
+        return array(entries.values());
+    }
+
+    /** proxy-config.json: прокси репозиториев и соединений ConnectionScope */
+    public String proxyConfig() {
+        Map<String, String> entries = new TreeMap<>();
+        for (Class<?> type : repositories) entries.put(type.getName(), proxy(type));
+        for (Class<?> type : JDBC_PROXIES) entries.put(type.getName(), proxy(type));
+        return array(entries.values());
+    }
+
+    /** записывает reflect-config.json и proxy-config.json в каталог (создаётся при необходимости) */
+    public void writeTo(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Files.writeString(directory.resolve("reflect-config.json"), reflectConfig(), StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve("proxy-config.json"), proxyConfig(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Шаг сборки: args[0] — каталог для файлов, дальше — полные имена интерфейсов репозиториев
+     * (или сущностей, не достижимых из репозиториев).
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        if (args.length < 2) {
+            System.err.println("Usage: ReachabilityMetadata <output-dir> <repository-or-entity-class>...");
+            System.exit(2);
+        }
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        ReachabilityMetadata metadata = new ReachabilityMetadata();
+        for (int i = 1; i < args.length; i++) {
+            Class<?> type = Class.forName(args[i], false, loader);
+            if (type.isInterface()) metadata.addRepository(type); else metadata.addEntity(type);
+        }
+        Path directory = Path.of(args[0]);
+        metadata.writeTo(directory);
+        System.out.println("Reachability metadata for " + metadata.repositories.size() + " repositories and "
+                + metadata.entities.size() + " entities written to " + directory.toAbsolutePath());
+    }
+
+    private static Class<?> entityType(Class<?> repositoryInterface) {
+        for (Type type : repositoryInterface.getGenericInterfaces()) {
+            if (type instanceof ParameterizedType pt && pt.getRawType().equals(CrudRepository.class)
+                    && pt.getActualTypeArguments()[0] instanceof Class<?> c) {
+                return c;
+            }
+        }
+        for (Type type : repositoryInterface.getGenericInterfaces()) {
+            if (type instanceof Class<?> parent && CrudRepository.class.isAssignableFrom(parent)
+                    && parent != CrudRepository.class) {
+                return entityType(parent);
+            }
+        }
+        throw new RepositoryException("Entity type not found for " + repositoryInterface.getName());
+    }
+
+    /** тип элемента результата: массива, Collection, Stream, Optional или сам тип */
+    private static Class<?> elementType(Type type) {
+        if (type instanceof GenericArrayType at) return rawType(at.getGenericComponentType());
+        Class<?> raw = rawType(type);
+        if (raw == null) return null;
+        if (raw.isArray()) return raw.getComponentType();
+        boolean container = Collection.class.isAssignableFrom(raw) || Stream.class.isAssignableFrom(raw)
+                || raw == Optional.class;
+        if (!container) return raw;
+        return type instanceof ParameterizedType pt ? rawType(pt.getActualTypeArguments()[0]) : null;
+    }
+
+    /** класс типа: List&lt;X&gt; → List, ? extends X → X; переменная типа — null */
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class<?> c) return c;
+        if (type instanceof ParameterizedType pt) return rawType(pt.getRawType());
+        if (type instanceof WildcardType wt) return rawType(wt.getUpperBounds()[0]);
+        return null;
+    }
+
+    /** результат @Query, который маппится в объект (а не примитив, строка, Map и т.п.) */
+    private static boolean isEntityCandidate(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && !type.isInterface() && !type.isEnum()
+                && !type.getName().startsWith("java.");
+    }
+
+    private static String entry(String name, String... flags) {
+        StringBuilder sb = new StringBuilder("  {\n    \"name\": \"").append(name).append('"');
+        for (String flag : flags) {
+            if (flag != null) sb.append(",\n    ").append(flag);
+        }
+        return sb.append("\n  }").toString();
+    }
+
+    private static String proxy(Class<?> type) {
+        return "  {\n    \"interfaces\": [\"" + type.getName() + "\"]\n  }";
+    }
+
+    private static String array(Collection<String> entries) {
+        return entries.isEmpty() ? "[]\n" : "[\n" + String.join(",\n", entries) + "\n]\n";
+    }
+}
@@ -4,7 +4,9 @@ package com.db.kurs.orm.metadata;
 import com.db.kurs.orm.annotation.link.*;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -16,12 +18,18 @@ public class RelationshipMetadata {
     public final RelationType type;
     public final String mappedBy;             // для @OneToMany / inverse @OneToOne
     public final String joinTable;            // для @ManyToMany
+    public final String joinColumn;           // @ManyToMany.joinColumn (FK на владельца в joinTable)
+    public final String inverseJoinColumn;    // @ManyToMany.inverseJoinColumn (FK на target в joinTable)
+    public final Class<?> targetType;         // связанная сущность (для коллекций — тип элемента)
     public final List<JoinColumn> joinColumns;// @JoinColumn или @JoinColumns
     public final FetchType fetch;
 
     public RelationshipMetadata(Field f) {
         this.field = f;
         f.setAccessible(true);
+        this.targetType = Collection.class.isAssignableFrom(f.getType())
+                ? (Class<?>) ((ParameterizedType) f.getGenericType()).getActualTypeArguments()[0]
+                : f.getType();
 
         OneToMany otm  = f.getAnnotation(OneToMany.class);
         ManyToMany mtm = f.getAnnotation(ManyToMany.class);
@@ -45,27 +53,61 @@ public class RelationshipMetadata {
             mappedBy  = otm.mappedBy();
             fetch     = otm.fetch();
             joinTable = null;
+            joinColumn = inverseJoinColumn = null;
         }
         else if (mtm != null) {
             type               = RelationType.MANY_TO_MANY;
             mappedBy           = null;
             fetch              = mtm.fetch();
             joinTable          = mtm.joinTable();
+            joinColumn         = mtm.joinColumn();
+            inverseJoinColumn  = mtm.inverseJoinColumn();
         }
         else if (oto != null) {
             type               = RelationType.ONE_TO_ONE;
             mappedBy           = oto.mappedBy();
             fetch              = oto.fetch();
             joinTable          = null;
+            joinColumn = inverseJoinColumn = null;
         }
         else if (mto != null) {
             type               = RelationType.MANY_TO_ONE;
             mappedBy           = null;
             fetch              = mto.fetch();
             joinTable          = null;
+            joinColumn = inverseJoinColumn = null;
         }
         else {
             throw new IllegalArgumentException("Not a relation: " + f.getName());
         }
     }
+
+    /**
+     * FK-колонка в таблице targetType для @OneToMany / inverse @OneToOne:
+     * имя из @JoinColumn поля mappedBy, либо само mappedBy, если поле не найдено.
+     */
+    public String mappedByColumn() {
+        try {
+            JoinColumn jc = targetType.getDeclaredField(mappedBy).getAnnotation(JoinColumn.class);
+            return jc != null ? jc.name() : mappedBy;
+        } catch (NoSuchFieldException e) {
+            return mappedBy;
+        }
+    }
+
+    /** колонка joinTable, ссылающаяся на владельца с PK ownerIdColumn */
+    public String ownerJoinColumn(String ownerIdColumn) {
+        return joinColumns.stream()
+                .filter(j -> j.referencedColumnName().equalsIgnoreCase(ownerIdColumn))
+                .map(JoinColumn::name)
+                .findFirst().orElse(joinColumn);
+    }
+
+    /** колонка joinTable, ссылающаяся на target с PK targetIdColumn */
+    public String targetJoinColumn(String targetIdColumn) {
+        return joinColumns.stream()
+                .filter(j -> j.referencedColumnName().equalsIgnoreCase(targetIdColumn))
+                .map(JoinColumn::name)
+                .findFirst().orElse(inverseJoinColumn);
+    }
 }
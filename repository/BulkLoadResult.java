@@ -0,0 +1,53 @@
+package com.db.kurs.orm.repository;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Итог bulkLoad: сколько строк записано, какие батчи не прошли и с какой скоростью шла загрузка.
+ */
+@Getter
+public class BulkLoadResult {
+    private final long inserted;
+    private final long failed;
+    private final long elapsedMillis;
+    private final List<FailedBatch> failedBatches;
+
+    /** батч, откатившийся вместе со своей транзакцией; firstRow — номер строки в источнике с 0 */
+    @Getter
+    public static class FailedBatch {
+        private final long firstRow;
+        private final int rows;
+        private final String error;
+
+        public FailedBatch(long firstRow, int rows, String error) {
+            this.firstRow = firstRow;
+            this.rows = rows;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return "FailedBatch{firstRow=" + firstRow + ", rows=" + rows + ", error=" + error + "}";
+        }
+    }
+
+    public BulkLoadResult(long inserted, long failed, long elapsedMillis, List<FailedBatch> failedBatches) {
+        this.inserted = inserted;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.failedBatches = List.copyOf(failedBatches);
+    }
+
+    /** записанных строк в секунду */
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? inserted : inserted * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkLoadResult{inserted=%d, failed=%d, elapsedMillis=%d, rowsPerSecond=%.0f, failedBatches=%s}",
+                inserted, failed, elapsedMillis, getRowsPerSecond(), failedBatches);
+    }
+}
@@ -0,0 +1,18 @@
+package com.db.kurs.orm.repository;
+
+import com.db.kurs.exception.RepositoryException;
+import lombok.Getter;
+
+/**
+ * Вызов репозитория не дождался места в своём @Bulkhead / ConcurrencyLimit.
+ */
+@Getter
+public class BulkheadFullException extends RepositoryException {
+    /** имя ограничения («Repository» или «Repository.method») */
+    private final String limit;
+
+    public BulkheadFullException(String limit, int maxConcurrent, long waitedMillis) {
+        super("Concurrency limit " + limit + " (" + maxConcurrent + ") is full, waited " + waitedMillis + " ms");
+        this.limit = limit;
+    }
+}
@@ -1,12 +1,45 @@
 package com.db.kurs.orm.repository;
 
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface CrudRepository<T, ID> {
     T findById(ID id);
+    /** Корни пачками по IN (...), связи — одним проходом на все; повторы и отсутствующие id пропускаются */
+    List<T> findAllById(Collection<ID> ids);
+    /** То же, при preserveOrder = true — в порядке id во входной коллекции */
+    List<T> findAllById(Collection<ID> ids, boolean preserveOrder);
     List<T> findAll();
     void create(T entity);
+    /** При cascade = true вставляет также детей @OneToMany и связи @ManyToMany, батчами по типам */
+    void create(T entity, boolean cascade);
     void update(T entity);
     void delete(ID id);
     Long countAll();
+    /** SELECT 1 по @Id, без маппинга сущности */
+    boolean existsById(ID id);
+    /** Размеры коллекции relation (имя поля) для каждого id одним GROUP BY; отсутствующие — 0 */
+    Map<ID, Long> countRelation(String relation, Collection<ID> ids);
+    /** Батчевый upsert: вставляет новые строки и обновляет существующие по @Id */
+    UpsertResult saveAll(Collection<T> entities);
+    /** Удаляет пачками по IN (...); возвращает число удалённых строк */
+    Long deleteAllById(Collection<ID> ids);
+    /** То же, при cascade = true сначала удаляет детей @OneToMany и строки joinTable @ManyToMany */
+    Long deleteAllById(Collection<ID> ids, boolean cascade);
+    /**
+     * Потоковая загрузка: строки читаются из источника по мере записи, батчами по batchSize,
+     * с фиксацией каждые bulkCommitSize строк на собственных соединениях (вне текущей транзакции)
+     */
+    BulkLoadResult bulkLoad(Iterator<T> rows);
+    /** То же для Stream; поток закрывается по завершении */
+    BulkLoadResult bulkLoad(Stream<T> rows);
+    /** Выгружает таблицу из курсора в out как CSV / NDJSON, без построения сущностей; возвращает число строк */
+    long exportAll(Writer out, ExportFormat format);
+    /** То же в OutputStream, UTF-8 */
+    long exportAll(OutputStream out, ExportFormat format);
 }
\ No newline at end of file
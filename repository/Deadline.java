@@ -0,0 +1,112 @@
+package com.db.kurs.orm.repository;
+
+import com.db.kurs.orm.annotation.Timeout;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Срок выполнения вызовов репозитория: то же, что @Timeout, но задаётся в коде на время scope.
+ * <pre>
+ * try (Deadline.Scope s = Deadline.in(Duration.ofMillis(200)).apply()) {
+ *     repo.findById(id);
+ * }
+ * </pre>
+ * Вложенные сроки не продлевают внешний: действует более ранний.
+ * Остаток ставится JDBC query timeout'ом каждому запросу, выполняемый запрос отменяется
+ * по истечении срока или при прерывании вызывающего потока.
+ */
+public final class Deadline {
+    /** что делать с оставшимися загрузками связей по истечении срока */
+    public enum Expiry {
+        /** прервать вызов DeadlineExceededException */
+        ABORT,
+        /** вернуть корни с уже загруженными связями, остальные связи не грузить */
+        SKIP_RELATIONS
+    }
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+    private static final Map<String, LongAdder> TIMEOUTS = new ConcurrentHashMap<>();
+
+    private final long deadlineNanos;   // System.nanoTime()
+    private final Expiry expiry;
+
+    private Deadline(long deadlineNanos, Expiry expiry) {
+        this.deadlineNanos = deadlineNanos;
+        this.expiry = expiry;
+    }
+
+    /** срок через budget от текущего момента */
+    public static Deadline in(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos(), Expiry.ABORT);
+    }
+
+    public static Deadline from(Timeout annotation) {
+        if (annotation == null) return null;
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(annotation.value()), annotation.onExpiry());
+    }
+
+    public Deadline onExpiry(Expiry expiry) {
+        return new Deadline(deadlineNanos, expiry);
+    }
+
+    public Expiry getExpiry() {
+        return expiry;
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /** срок текущего потока или null */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /** делает срок текущим (если внешний срок раньше — остаётся внешний) */
+    public Scope apply() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(previous != null && previous.deadlineNanos - deadlineNanos <= 0 ? previous : this);
+        return () -> {
+            if (previous == null) CURRENT.remove(); else CURRENT.set(previous);
+        };
+    }
+
+    /** снимает срок текущего потока до close() (работа, результат которой ждут и другие вызовы) */
+    public static Scope suspend() {
+        Deadline previous = CURRENT.get();
+        CURRENT.remove();
+        return () -> {
+            if (previous != null) CURRENT.set(previous);
+        };
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** учитывает истёкший срок вызова method («Repository.method») */
+    public static void recordTimeout(String method) {
+        TIMEOUTS.computeIfAbsent(String.valueOf(method), m -> new LongAdder()).increment();
+    }
+
+    /** число вызовов, не уложившихся в срок (прерванных или с пропущенными связями), по методам */
+    public static Map<String, Long> getTimeoutCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        TIMEOUTS.forEach((m, n) -> counts.put(m, n.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,18 @@
+package com.db.kurs.orm.repository;
+
+import com.db.kurs.exception.RepositoryException;
+import lombok.Getter;
+
+/**
+ * Вызов репозитория не уложился в свой Deadline / @Timeout.
+ */
+@Getter
+public class DeadlineExceededException extends RepositoryException {
+    /** «Repository.method» вызова */
+    private final String method;
+
+    public DeadlineExceededException(String method, String detail) {
+        super("Deadline exceeded in " + method + (detail == null ? "" : ": " + detail));
+        this.method = method;
+    }
+}
@@ -0,0 +1,86 @@
+package com.db.kurs.orm.repository;
+
+import com.db.kurs.orm.annotation.FetchGraph;
+
+import java.util.*;
+
+/**
+ * Программный граф загрузки: то же, что @FetchGraph, но задаётся в коде на время scope.
+ * <pre>
+ * try (EntityGraph.Scope s = EntityGraph.of("books").maxDepth(1).apply()) {
+ *     repo.findAll();
+ * }
+ * </pre>
+ * Граф из scope имеет приоритет над @FetchGraph метода.
+ */
+public final class EntityGraph {
+    private static final ThreadLocal<EntityGraph> CURRENT = new ThreadLocal<>();
+
+    private final Set<String> paths;
+    private final int maxDepth;
+
+    private EntityGraph(Set<String> paths, int maxDepth) {
+        this.paths = Collections.unmodifiableSet(paths);
+        this.maxDepth = maxDepth;
+    }
+
+    /** только перечисленные пути связей (без ограничения глубины) */
+    public static EntityGraph of(String... paths) {
+        return new EntityGraph(new LinkedHashSet<>(Arrays.asList(paths)), -1);
+    }
+
+    /** только корневые строки, без связей */
+    public static EntityGraph rootsOnly() {
+        return new EntityGraph(new LinkedHashSet<>(), 0);
+    }
+
+    public static EntityGraph from(FetchGraph annotation) {
+        if (annotation == null) return null;
+        return new EntityGraph(new LinkedHashSet<>(Arrays.asList(annotation.value())), annotation.maxDepth());
+    }
+
+    public EntityGraph maxDepth(int depth) {
+        return new EntityGraph(new LinkedHashSet<>(paths), depth);
+    }
+
+    public Set<String> getPaths() {
+        return paths;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** граф текущего потока или null */
+    public static EntityGraph current() {
+        return CURRENT.get();
+    }
+
+    public Scope apply() {
+        EntityGraph previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) CURRENT.remove(); else CURRENT.set(previous);
+        };
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof EntityGraph g && maxDepth == g.maxDepth && paths.equals(g.paths);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(paths, maxDepth);
+    }
+
+    @Override
+    public String toString() {
+        return "EntityGraph{paths=" + paths + ", maxDepth=" + maxDepth + "}";
+    }
+}
@@ -0,0 +1,9 @@
+package com.db.kurs.orm.repository;
+
+/**
+ * Формат выгрузки строк: CSV (RFC 4180, первая строка — заголовок) или NDJSON (объект JSON на строку).
+ */
+public enum ExportFormat {
+    CSV,
+    NDJSON
+}
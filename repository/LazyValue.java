@@ -0,0 +1,112 @@
+package com.db.kurs.orm.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Значение ленивой колонки (@Column(fetch = LAZY)) — byte[] или String.
+ * У загруженной сущности значение читается при первом get(); одним запросом загружается
+ * эта колонка у всех сущностей того же результата («соседей»), чтобы обход списка
+ * не превращался в N запросов. openStream() / openReader() читают колонку потоком
+ * с сервера, не поднимая значение в кучу целиком.
+ * <p>
+ * Запись: create, bulkLoad и saveAll новых строк пишут значение всегда, update и saveAll
+ * существующих строк — только изменённое через of() / set(); незагруженное значение при update не трогается.
+ */
+public final class LazyValue<T> {
+
+    /** источник значения незагруженной колонки; реализуется загрузчиком репозитория */
+    public interface Source<T> {
+        /** значение колонки этой строки (заодно загружает соседей) */
+        T load();
+
+        /** поток BLOB-колонки; закрытие потока освобождает курсор и соединение */
+        InputStream openStream();
+
+        /** поток CLOB-колонки; закрытие освобождает курсор и соединение */
+        Reader openReader();
+    }
+
+    private final Source<T> source;
+    private T value;
+    private boolean loaded;
+    private boolean dirty;
+
+    private LazyValue(Source<T> source, T value, boolean loaded, boolean dirty) {
+        this.source = source;
+        this.value = value;
+        this.loaded = loaded;
+        this.dirty = dirty;
+    }
+
+    /** значение, заданное в коде: будет записано при create / update */
+    public static <T> LazyValue<T> of(T value) {
+        return new LazyValue<>(null, value, true, true);
+    }
+
+    /** незагруженное значение строки из БД */
+    public static <T> LazyValue<T> deferred(Source<T> source) {
+        return new LazyValue<>(source, null, false, false);
+    }
+
+    public synchronized T get() {
+        if (!loaded) {
+            value = source.load();
+            loaded = true;
+        }
+        return value;
+    }
+
+    public synchronized void set(T value) {
+        this.value = value;
+        this.loaded = true;
+        this.dirty = true;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /** значение задано в коде и ещё не записано */
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /** вызывается executor'ом после записи */
+    public synchronized void markClean() {
+        dirty = false;
+    }
+
+    /** поток байтов колонки; уже загруженное значение отдаётся из памяти */
+    public InputStream openStream() {
+        synchronized (this) {
+            if (loaded || source == null) {
+                if (value == null) return InputStream.nullInputStream();
+                if (value instanceof byte[] bytes) return new ByteArrayInputStream(bytes);
+                throw new IllegalStateException("Not a binary column value: " + value.getClass().getName());
+            }
+        }
+        return source.openStream();
+    }
+
+    /** поток символов колонки; уже загруженное значение отдаётся из памяти */
+    public Reader openReader() {
+        synchronized (this) {
+            if (loaded || source == null) {
+                if (value == null) return Reader.nullReader();
+                if (value instanceof String s) return new StringReader(s);
+                throw new IllegalStateException("Not a character column value: " + value.getClass().getName());
+            }
+        }
+        return source.openReader();
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (!loaded) return "LazyValue[not loaded]";
+        if (value instanceof byte[] bytes) return "LazyValue[" + bytes.length + " bytes]";
+        return "LazyValue[" + (value == null ? "null" : ((String) value).length() + " chars") + "]";
+    }
+}
@@ -0,0 +1,22 @@
+package com.db.kurs.orm.repository;
+
+import com.db.kurs.exception.RepositoryException;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * UPDATE не нашёл строку с ожидаемой версией: её изменили (или удалили) после чтения.
+ */
+@Getter
+public class OptimisticLockException extends RepositoryException {
+    private final Class<?> entityType;
+    /** id сущностей, обновление которых не прошло */
+    private final List<Object> conflictingIds;
+
+    public OptimisticLockException(Class<?> entityType, List<Object> conflictingIds) {
+        super("Optimistic lock conflict on " + entityType.getSimpleName() + " id=" + conflictingIds);
+        this.entityType = entityType;
+        this.conflictingIds = List.copyOf(conflictingIds);
+    }
+}
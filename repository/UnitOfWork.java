@@ -0,0 +1,203 @@
+package com.db.kurs.orm.repository;
+
+import com.db.kurs.exception.RepositoryException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+/**
+ * Отложенная запись (write-behind) в пределах потока. Пока scope открыт, create/update/delete
+ * репозиториев не выполняются сразу, а запоминаются; повторные изменения одной сущности
+ * (тип, id) схлопываются. commit() сбрасывает их JDBC-батчами: вставки и обновления — по типам
+ * от родителей к детям (по @ManyToOne / owner @OneToOne), удаления — в обратном порядке.
+ * <pre>
+ * try (UnitOfWork uow = UnitOfWork.begin()) {
+ *     authors.create(a);
+ *     books.update(b);
+ *     uow.commit();
+ * }
+ * </pre>
+ * Любой другой вызов репозитория (чтение, saveAll, ...) сначала сбрасывает накопленное,
+ * поэтому видит свои записи. Транзакцию scope не открывает: границы задаёт внешняя транзакция.
+ * Вложенный begin() присоединяется к внешнему scope; сбрасывает и закрывает его только внешний.
+ */
+@Slf4j
+public final class UnitOfWork implements AutoCloseable {
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Запись изменений одного типа сущности; реализует репозиторий этого типа.
+     */
+    public interface Writer {
+        Class<?> entityType();
+
+        /** типы, на строки которых ссылаются FK этого типа */
+        Set<Class<?>> dependsOn();
+
+        Object idOf(Object entity);
+
+        /** вставка; проставляет сгенерированные @Id */
+        void insert(List<Object> entities);
+
+        void update(List<Object> entities);
+
+        void delete(List<Object> ids);
+    }
+
+    private enum Kind { UPDATE, DELETE }
+
+    /** накопленные изменения одного типа */
+    private static final class Pending {
+        final Writer writer;
+        final Set<Object> inserts = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Object> insertOrder = new ArrayList<>();
+        final Map<Object, Kind> byId = new LinkedHashMap<>();
+        final Map<Object, Object> updated = new HashMap<>();   // id → последнее состояние
+
+        Pending(Writer writer) {
+            this.writer = writer;
+        }
+
+        boolean isEmpty() {
+            return insertOrder.isEmpty() && byId.isEmpty();
+        }
+    }
+
+    private final UnitOfWork outer;   // null — это внешний scope
+    private final Map<Class<?>, Pending> pending = new LinkedHashMap<>();
+    private boolean flushing;
+    private boolean closed;
+
+    private UnitOfWork(UnitOfWork outer) {
+        this.outer = outer;
+    }
+
+    /** открывает scope в текущем потоке (или присоединяется к уже открытому) */
+    public static UnitOfWork begin() {
+        UnitOfWork active = CURRENT.get();
+        if (active != null) return new UnitOfWork(active);
+        UnitOfWork uow = new UnitOfWork(null);
+        CURRENT.set(uow);
+        return uow;
+    }
+
+    /** scope текущего потока, в который пишутся изменения, или null */
+    public static UnitOfWork current() {
+        UnitOfWork uow = CURRENT.get();
+        return uow == null || uow.flushing ? null : uow;
+    }
+
+    public void registerNew(Writer writer, Object entity) {
+        Pending p = pending(writer);
+        if (p.inserts.add(entity)) p.insertOrder.add(entity);
+    }
+
+    public void registerDirty(Writer writer, Object entity) {
+        Pending p = pending(writer);
+        if (p.inserts.contains(entity)) return;   // попадёт в INSERT в последнем состоянии
+        Object id = writer.idOf(entity);
+        if (id == null) {
+            throw new RepositoryException("Cannot update " + writer.entityType().getSimpleName() + " without id");
+        }
+        if (p.byId.get(id) == Kind.DELETE) {
+            throw new RepositoryException("Update of deleted " + writer.entityType().getSimpleName() + " id=" + id);
+        }
+        p.byId.put(id, Kind.UPDATE);
+        p.updated.put(id, entity);
+    }
+
+    public void registerRemoved(Writer writer, Object id) {
+        Pending p = pending(writer);
+        p.byId.put(id, Kind.DELETE);
+        p.updated.remove(id);
+    }
+
+    private Pending pending(Writer writer) {
+        UnitOfWork root = root();
+        if (root.closed) throw new RepositoryException("Unit of work is closed");
+        return root.pending.computeIfAbsent(writer.entityType(), t -> new Pending(writer));
+    }
+
+    private UnitOfWork root() {
+        return outer == null ? this : outer.root();
+    }
+
+    /**
+     * Сбрасывает накопленные изменения, scope остаётся открытым. Изменения убираются по мере записи:
+     * если запись падает, упавший батч и всё после него остаются накопленными, и flush можно
+     * повторить (например, в новой транзакции после отката).
+     */
+    public void flush() {
+        UnitOfWork root = root();
+        if (root.flushing || root.pending.values().stream().allMatch(Pending::isEmpty)) return;
+        List<Pending> ordered = root.ordered();
+        root.flushing = true;
+        try {
+            for (Pending p : ordered) {
+                if (p.insertOrder.isEmpty()) continue;
+                p.writer.insert(new ArrayList<>(p.insertOrder));
+                p.inserts.clear();
+                p.insertOrder.clear();
+            }
+            for (Pending p : ordered) {
+                List<Object> updates = new ArrayList<>();
+                for (var e : p.byId.entrySet()) {
+                    if (e.getValue() == Kind.UPDATE) updates.add(p.updated.get(e.getKey()));
+                }
+                if (updates.isEmpty()) continue;
+                p.writer.update(updates);
+                p.byId.values().removeIf(kind -> kind == Kind.UPDATE);
+                p.updated.clear();
+            }
+            for (int i = ordered.size() - 1; i >= 0; i--) {
+                Pending p = ordered.get(i);
+                List<Object> deletes = new ArrayList<>(p.byId.keySet());   // остались только удаления
+                if (deletes.isEmpty()) continue;
+                p.writer.delete(deletes);
+                p.byId.clear();
+            }
+        } finally {
+            root.flushing = false;
+            root.pending.values().removeIf(Pending::isEmpty);
+        }
+    }
+
+    /** сбрасывает изменения; у вложенного scope ничего не делает */
+    public void commit() {
+        if (outer == null) flush();
+    }
+
+    /** закрывает scope; не сброшенные изменения отбрасываются */
+    @Override
+    public void close() {
+        if (outer != null || closed) return;
+        closed = true;
+        CURRENT.remove();
+        int lost = 0;
+        for (Pending p : pending.values()) lost += p.insertOrder.size() + p.byId.size();
+        if (lost > 0) log.warn("Unit of work closed without commit, {} pending changes discarded", lost);
+        pending.clear();
+    }
+
+    /** типы от родителей к детям; циклы разрываются в порядке регистрации */
+    private List<Pending> ordered() {
+        List<Pending> out = new ArrayList<>();
+        Set<Class<?>> done = new HashSet<>();
+        Set<Class<?>> visiting = new HashSet<>();
+        for (Class<?> type : pending.keySet()) {
+            visit(type, done, visiting, out);
+        }
+        return out;
+    }
+
+    private void visit(Class<?> type, Set<Class<?>> done, Set<Class<?>> visiting, List<Pending> out) {
+        Pending p = pending.get(type);
+        if (p == null || done.contains(type) || !visiting.add(type)) return;
+        for (Class<?> parent : p.writer.dependsOn()) {
+            visit(parent, done, visiting, out);
+        }
+        visiting.remove(type);
+        done.add(type);
+        out.add(p);
+    }
+}
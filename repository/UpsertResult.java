@@ -0,0 +1,22 @@
+package com.db.kurs.orm.repository;
+
+import lombok.Getter;
+
+/**
+ * Итог saveAll: сколько строк вставлено и сколько обновлено.
+ */
+@Getter
+public class UpsertResult {
+    private final long inserted;
+    private final long updated;
+
+    public UpsertResult(long inserted, long updated) {
+        this.inserted = inserted;
+        this.updated  = updated;
+    }
+
+    @Override
+    public String toString() {
+        return "UpsertResult{inserted=" + inserted + ", updated=" + updated + "}";
+    }
+}
@@ -0,0 +1,266 @@
+package com.db.kurs.orm.repository.factory;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.annotation.Bulkhead;
+import com.db.kurs.orm.repository.BulkheadFullException;
+import com.db.kurs.orm.repository.Deadline;
+import com.db.kurs.orm.repository.DeadlineExceededException;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulkhead: не больше limit одновременных вызовов репозитория (или метода), остальные ждут
+ * в честной (FIFO) очереди не дольше maxWaitMillis и текущего Deadline, затем получают
+ * BulkheadFullException. Так тяжёлый отчётный репозиторий не забирает весь пул соединений
+ * у OLTP-репозиториев: достаточно ограничить его долю.
+ * <p>
+ * Один экземпляр можно передать в RepositorySettings нескольких репозиториев — тогда лимит у них общий.
+ * Повторный вход того же потока (вызов репозитория из вызова того же репозитория) места не занимает.
+ * <p>
+ * Адаптивные режимы подстраивают лимит между minLimit и maxLimit по завершённым вызовам:
+ * AIMD — +1 за каждые limit успешных вызовов при загрузке не меньше половины лимита,
+ * ×backoffRatio при перегрузке (таймаут, истёкший Deadline, нет соединения, вызов дольше latencyThresholdMillis);
+ * VEGAS — по оценке очереди limit·(1 − minRtt/rtt): меньше VEGAS_ALPHA — +1, больше VEGAS_BETA — −1.
+ */
+@Slf4j
+public class ConcurrencyLimit {
+    public enum Mode { FIXED, AIMD, VEGAS }
+
+    private static final int VEGAS_ALPHA = 3;
+    private static final int VEGAS_BETA = 6;
+    private static final int VEGAS_PROBE_SAMPLES = 1000;   // через столько вызовов minRtt измеряется заново
+
+    /** все созданные ограничения по имени — для метрик */
+    private static final Map<String, ConcurrencyLimit> REGISTRY = new ConcurrentHashMap<>();
+
+    @Getter
+    private final String name;
+    @Getter
+    private final Mode mode;
+    /** сколько ждать места, мс; 0 — не ждать */
+    @Getter
+    @Setter
+    private volatile long maxWaitMillis;
+    /** нижняя граница адаптивного лимита */
+    @Getter
+    @Setter
+    private volatile int minLimit = 1;
+    /** верхняя граница адаптивного лимита */
+    @Getter
+    @Setter
+    private volatile int maxLimit;
+    /** AIMD: вызов дольше этого считается перегрузкой, мс */
+    @Getter
+    @Setter
+    private volatile long latencyThresholdMillis = 1000;
+    /** множитель лимита при перегрузке */
+    @Getter
+    @Setter
+    private volatile double backoffRatio = 0.9;
+
+    private final AdjustableSemaphore permits;
+    private volatile int limit;
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    // состояние адаптации (под this)
+    private double increase;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long samples;
+
+    public ConcurrencyLimit(String name, int limit, long maxWaitMillis) {
+        this(name, limit, maxWaitMillis, Mode.FIXED);
+    }
+
+    public ConcurrencyLimit(String name, int limit, long maxWaitMillis, Mode mode) {
+        if (limit < 1) throw new IllegalArgumentException("Concurrency limit must be positive: " + limit);
+        this.name = name;
+        this.limit = limit;
+        this.maxLimit = Math.max(limit, limit * 4);
+        this.maxWaitMillis = maxWaitMillis;
+        this.mode = mode;
+        this.permits = new AdjustableSemaphore(limit);
+        REGISTRY.put(name, this);
+    }
+
+    public static ConcurrencyLimit from(String name, Bulkhead annotation) {
+        if (annotation == null) return null;
+        return new ConcurrencyLimit(name, annotation.maxConcurrent(), annotation.maxWaitMillis(), annotation.mode());
+    }
+
+    /** ограничения, созданные в этой JVM, по имени */
+    public static Map<String, ConcurrencyLimit> getAll() {
+        return new TreeMap<>(REGISTRY);
+    }
+
+    /**
+     * Занимает место; ждёт не дольше maxWaitMillis и остатка текущего Deadline.
+     * @throws BulkheadFullException места не дождались
+     */
+    public Permit acquire() {
+        int[] held = depth.get();
+        if (held[0] > 0) {
+            held[0]++;
+            return new Permit(0, -1);
+        }
+        long waitMillis = maxWaitMillis;
+        Deadline deadline = Deadline.current();
+        if (deadline != null) waitMillis = Math.max(0, Math.min(waitMillis, deadline.remainingMillis()));
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+            ok = permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);   // с таймаутом — честно и при 0
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for concurrency limit " + name);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!ok) {
+            rejected.increment();
+            throw new BulkheadFullException(name, limit, TimeUnit.NANOSECONDS.toMillis(waited));
+        }
+        acquired.increment();
+        held[0] = 1;
+        return new Permit(System.nanoTime(), inFlight.incrementAndGet());
+    }
+
+    /** занятое место; release() — ровно один раз */
+    public final class Permit {
+        private final long startNanos;
+        private final int inFlightAtStart;   // -1 — повторный вход
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /** @param failure исключение вызова или null */
+        public void release(Throwable failure) {
+            depth.get()[0]--;
+            if (inFlightAtStart < 0) return;
+            inFlight.decrementAndGet();
+            if (mode != Mode.FIXED) adapt(System.nanoTime() - startNanos, inFlightAtStart, overloaded(failure));
+            permits.release();
+        }
+    }
+
+    /** признак перегрузки: запрос не успел или не получил соединение */
+    private static boolean overloaded(Throwable failure) {
+        return failure instanceof DeadlineExceededException
+                || failure instanceof QueryTimeoutException
+                || failure instanceof CannotGetJdbcConnectionException;
+    }
+
+    private synchronized void adapt(long rttNanos, int inFlightAtStart, boolean overloaded) {
+        int next = limit;
+        boolean busy = inFlightAtStart * 2 >= limit;   // при малой загрузке задержка ничего не говорит о лимите
+        if (mode == Mode.AIMD) {
+            if (overloaded || rttNanos > TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis)) {
+                next = Math.min(limit - 1, (int) (limit * backoffRatio));
+            } else if (busy) {
+                increase += 1.0 / limit;
+                if (increase >= 1) {
+                    increase = 0;
+                    next = limit + 1;
+                }
+            }
+        } else {
+            minRttNanos = ++samples % VEGAS_PROBE_SAMPLES == 0 ? rttNanos : Math.min(minRttNanos, rttNanos);
+            double queue = limit * (1 - (double) minRttNanos / Math.max(1, rttNanos));
+            if (overloaded) {
+                next = Math.min(limit - 1, (int) (limit * backoffRatio));
+            } else if (queue > VEGAS_BETA) {
+                next = limit - 1;
+            } else if (queue < VEGAS_ALPHA && busy) {
+                next = limit + 1;
+            }
+        }
+        next = Math.max(minLimit, Math.min(maxLimit, next));
+        if (next != limit) setLimit(next);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /** меняет лимит; уже занятые места не отбираются, лишние освободятся по завершении вызовов */
+    public synchronized void setLimit(int newLimit) {
+        if (newLimit < 1) throw new IllegalArgumentException("Concurrency limit must be positive: " + newLimit);
+        int delta = newLimit - limit;
+        if (delta > 0) permits.release(delta);
+        else if (delta < 0) permits.reducePermits(-delta);
+        log.debug("Concurrency limit {}: {} -> {}", name, limit, newLimit);
+        limit = newLimit;
+    }
+
+    /** вызовов сейчас внутри */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /** вызовов сейчас в очереди */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    /** вызовов, не дождавшихся места */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /** суммарное ожидание места, мс */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    /** самое долгое ожидание места, мс */
+    public long getLongestWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /** среднее ожидание на попытку (с отказами), мс */
+    public double getAverageWaitMillis() {
+        long attempts = acquired.sum() + rejected.sum();
+        return attempts == 0 ? 0 : waitNanos.sum() / 1e6 / attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimit[" + name + ", " + mode + ", limit=" + limit + ", inFlight=" + inFlight.get()
+                + ", queued=" + permits.getQueueLength() + ", rejected=" + rejected.sum() + "]";
+    }
+
+    /** честный семафор, у которого можно забрать разрешения */
+    private static final class AdjustableSemaphore extends Semaphore {
+        AdjustableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.db.kurs.orm.repository.factory;
+
+/**
+ * Метод репозитория, который сейчас выполняется в этом потоке (для логов и метрик executor'ов).
+ */
+public final class InvocationContext {
+    private static final ThreadLocal<String> METHOD = new ThreadLocal<>();
+
+    private InvocationContext() {
+    }
+
+    /** «Repository.method» текущего вызова или null вне репозитория */
+    public static String currentMethod() {
+        return METHOD.get();
+    }
+
+    /** входит в вызов method; возвращает предыдущее значение для restore (в т.ч. при переносе вызова в другой поток) */
+    public static String enter(String method) {
+        String previous = METHOD.get();
+        METHOD.set(method);
+        return previous;
+    }
+
+    public static void restore(String previous) {
+        if (previous == null) METHOD.remove(); else METHOD.set(previous);
+    }
+}
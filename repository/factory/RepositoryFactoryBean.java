@@ -6,13 +6,17 @@ import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import javax.sql.DataSource;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
 
 public class RepositoryFactoryBean<T> implements FactoryBean<T> {
 
     private final Class<T> repositoryInterface;
     private final JdbcTemplate jdbcTemplate;
     private final EntityMapper entityMapper;
+    private RepositorySettings settings = new RepositorySettings();
 
     public RepositoryFactoryBean(Class<T> repositoryInterface,
                                  JdbcTemplate jdbcTemplate,
@@ -28,10 +32,31 @@ public class RepositoryFactoryBean<T> implements FactoryBean<T> {
         this.entityMapper = entityMapper;
     }
 
+    /**
+     * @param replicas DataSource'ы реплик: читающие методы уходят на них, пишущие — на jdbcTemplate
+     */
+    public RepositoryFactoryBean(Class<T> repositoryInterface,
+                                 JdbcTemplate jdbcTemplate,
+                                 List<DataSource> replicas,
+                                 EntityMapper entityMapper) {
+        this(repositoryInterface, jdbcTemplate, entityMapper);
+        settings.setReplicas(new ArrayList<>(replicas));
+    }
+
+    /**
+     * @param shards JdbcTemplate шардов; первый используется для служебных запросов (определение диалекта)
+     */
+    public RepositoryFactoryBean(Class<T> repositoryInterface,
+                                 List<JdbcTemplate> shards,
+                                 EntityMapper entityMapper) {
+        this(repositoryInterface, shards.isEmpty() ? null : shards.get(0), entityMapper);
+        settings.setShards(new ArrayList<>(shards));
+    }
+
     @Override
     public T getObject() {
         // Передаём конкретный интерфейс репозитория в RepositoryInvocationHandler
-        RepositoryInvocationHandler handler = new RepositoryInvocationHandler(jdbcTemplate, entityMapper, repositoryInterface);
+        RepositoryInvocationHandler handler = new RepositoryInvocationHandler(jdbcTemplate, entityMapper, repositoryInterface, settings);
         return (T) Proxy.newProxyInstance(
                 repositoryInterface.getClassLoader(),
                 new Class[]{repositoryInterface},
@@ -39,6 +64,14 @@ public class RepositoryFactoryBean<T> implements FactoryBean<T> {
         );
     }
 
+    public RepositorySettings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(RepositorySettings settings) {
+        this.settings = settings;
+    }
+
     @Override
     public Class<?> getObjectType() {
         return repositoryInterface;
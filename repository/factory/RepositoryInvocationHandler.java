@@ -1,21 +1,53 @@
 package com.db.kurs.orm.repository.factory;
 
 import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.annotation.Bulkhead;
+import com.db.kurs.orm.annotation.FetchGraph;
 import com.db.kurs.orm.annotation.Param;
 import com.db.kurs.orm.annotation.Query;
+import com.db.kurs.orm.annotation.Timeout;
 import com.db.kurs.orm.mapper.EntityMapper;
 import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.metadata.EntityMetadata;
 import com.db.kurs.orm.repository.CrudRepository;
+import com.db.kurs.orm.repository.Deadline;
+import com.db.kurs.orm.repository.DeadlineExceededException;
+import com.db.kurs.orm.repository.EntityGraph;
+import com.db.kurs.orm.repository.ExportFormat;
+import com.db.kurs.orm.repository.UnitOfWork;
+import com.db.kurs.orm.repository.factory.executor.BatchingFindByIdExecutor;
+import com.db.kurs.orm.repository.factory.executor.BulkLoadExecutor;
+import com.db.kurs.orm.repository.factory.executor.CachedFindByIdExecutor;
+import com.db.kurs.orm.repository.factory.executor.DeleteExecutor;
+import com.db.kurs.orm.repository.factory.executor.ExistsExecutor;
+import com.db.kurs.orm.repository.factory.executor.ExportExecutor;
+import com.db.kurs.orm.repository.factory.executor.FindAllByIdExecutor;
+import com.db.kurs.orm.repository.factory.executor.GraphInsertExecutor;
 import com.db.kurs.orm.repository.factory.executor.InsertExecutor;
 import com.db.kurs.orm.repository.factory.executor.PreparedQueryExecutor;
+import com.db.kurs.orm.repository.factory.executor.PrimitiveQueryExecutor;
+import com.db.kurs.orm.repository.factory.executor.RelationCountExecutor;
 import com.db.kurs.orm.repository.factory.executor.RelationQueryExecutor;
+import com.db.kurs.orm.repository.factory.executor.UnitOfWorkWriter;
 import com.db.kurs.orm.repository.factory.executor.UpdateExecutor;
+import com.db.kurs.orm.repository.factory.executor.UpsertExecutor;
+import com.db.kurs.orm.repository.factory.cache.ChangeLog;
+import com.db.kurs.orm.repository.factory.cache.OffHeapEntityCache;
+import com.db.kurs.orm.repository.factory.jdbc.ConnectionScope;
+import com.db.kurs.orm.repository.factory.jdbc.InstrumentedJdbcTemplate;
+import com.db.kurs.orm.repository.factory.jdbc.ReplicaRouter;
+import com.db.kurs.orm.repository.factory.jdbc.ShardRouter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 
 @Slf4j
@@ -24,24 +56,299 @@ public class RepositoryInvocationHandler implements InvocationHandler {
     private final JdbcTemplate jdbcTemplate;
     private final EntityMapper entityMapper;
     private final Class<?> repositoryInterface;
+    private final RepositorySettings settings;
     private final Map<Method, QueryExecutor> executors = new ConcurrentHashMap<>();
     private final Map<Class<?>, CrudMetadata> metadataCache = new HashMap<>();
+    private final ReplicaRouter replicaRouter;   // null — без реплик
+    private final ShardRouter shardRouter;       // null — без шардирования
+    private volatile UnitOfWork.Writer unitOfWorkWriter;
+    private final ConcurrencyLimit repositoryLimit;   // null — без ограничения
+    private final Map<Method, Optional<ConcurrencyLimit>> methodLimits = new ConcurrentHashMap<>();
+
+    /** CRUD-методы, которые только читают */
+    private static final Set<String> READ_METHODS =
+            Set.of("findById", "findAllById", "findAll", "countAll", "existsById", "countRelation", "exportAll");
+    /** изменяющая часть запроса @Query */
+    private static final Pattern WRITE_KEYWORD =
+            Pattern.compile("\\b(insert|update|delete|merge)\\b");
+    /** блокирующее чтение: SELECT ... FOR UPDATE / FOR NO KEY UPDATE / FOR SHARE / FOR KEY SHARE [OF ...] */
+    private static final Pattern LOCKING_CLAUSE =
+            Pattern.compile("\\bfor\\s+(no\\s+key\\s+update|update|key\\s+share|share)\\b.*$", Pattern.DOTALL);
 
     public RepositoryInvocationHandler(JdbcTemplate jdbcTemplate,
                                        EntityMapper entityMapper,
                                        Class<?> repositoryInterface) {
-        this.jdbcTemplate = jdbcTemplate;
+        this(jdbcTemplate, entityMapper, repositoryInterface, new RepositorySettings());
+    }
+
+    public RepositoryInvocationHandler(JdbcTemplate jdbcTemplate,
+                                       EntityMapper entityMapper,
+                                       Class<?> repositoryInterface,
+                                       RepositorySettings settings) {
+        this.settings = settings;
+        this.jdbcTemplate = instrument(jdbcTemplate);
         this.entityMapper = entityMapper;
         this.repositoryInterface = repositoryInterface;
+        if (!settings.getShards().isEmpty() && !settings.getReplicas().isEmpty()) {
+            throw new RepositoryException("Replicas and shards cannot be combined for " + repositoryInterface.getName());
+        }
+        this.shardRouter = settings.getShards().isEmpty()
+                ? null
+                : new ShardRouter(settings.getShards(), getEntityType(repositoryInterface));
+        this.replicaRouter = settings.getReplicas().isEmpty()
+                ? null
+                : new ReplicaRouter(this.jdbcTemplate, settings.getReplicas(),
+                        settings.getReplicaBalancing(), settings.getReadYourWritesMillis());
+        if (settings.getChangeLog() != null) {
+            settings.getChangeLog().register(getEntityType(repositoryInterface));
+        }
+        this.repositoryLimit = settings.getConcurrencyLimit() != null
+                ? settings.getConcurrencyLimit()
+                : ConcurrencyLimit.from(repositoryInterface.getSimpleName(), repositoryInterface.getAnnotation(Bulkhead.class));
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) {
-        return executors.computeIfAbsent(method, this::createExecutor).execute(args);
+        String name = repositoryInterface.getSimpleName() + "." + method.getName();
+        String previous = InvocationContext.enter(name);
+        Deadline timeout = Deadline.from(method.getAnnotation(Timeout.class));
+        Deadline.Scope scope = timeout != null ? timeout.apply() : null;
+        try {
+            return invokeWithinDeadline(name, method, args);
+        } finally {
+            if (scope != null) scope.close();
+            InvocationContext.restore(previous);
+        }
+    }
+
+    /** вызов с учётом срока: истёкший срок и отменённые по нему запросы — DeadlineExceededException */
+    private Object invokeWithinDeadline(String name, Method method, Object[] args) {
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            Deadline.recordTimeout(name);
+            throw new DeadlineExceededException(name, "expired before start");
+        }
+        // сначала узкое ограничение метода, чтобы не держать место репозитория в очереди метода
+        ConcurrencyLimit.Permit own = acquire(methodLimit(name, method), null);
+        ConcurrencyLimit.Permit shared = acquire(repositoryLimit, own);
+        RuntimeException failure = null;
+        try {
+            return doInvoke(method, args);
+        } catch (DeadlineExceededException ex) {
+            failure = ex;
+            Deadline.recordTimeout(name);
+            throw ex;
+        } catch (RuntimeException ex) {
+            failure = ex;
+            if (deadline == null || !deadline.isExpired()) throw ex;
+            Deadline.recordTimeout(name);
+            throw failure = new DeadlineExceededException(name, ex.getMessage());
+        } finally {
+            if (shared != null) shared.release(failure);
+            if (own != null) own.release(failure);
+        }
+    }
+
+    private ConcurrencyLimit methodLimit(String name, Method method) {
+        return methodLimits.computeIfAbsent(method,
+                m -> Optional.ofNullable(ConcurrencyLimit.from(name, m.getAnnotation(Bulkhead.class)))).orElse(null);
+    }
+
+    /** место в limit (null — без ограничения); при отказе освобождает уже занятое held */
+    private static ConcurrencyLimit.Permit acquire(ConcurrencyLimit limit, ConcurrencyLimit.Permit held) {
+        if (limit == null) return null;
+        try {
+            return limit.acquire();
+        } catch (RuntimeException ex) {
+            if (held != null) held.release(ex);
+            throw ex;
+        }
+    }
+
+    private Object doInvoke(Method method, Object[] args) {
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null) {
+            if (defer(uow, method, args)) {
+                invalidateCache(method, args, false);   // в журнал — при сбросе
+                return null;
+            }
+            uow.flush();   // остальные вызовы должны видеть отложенные записи
+        }
+        Object result = executors.computeIfAbsent(method, this::createExecutor).execute(args);
+        invalidateCache(method, args, true);
+        return result;
+    }
+
+    /**
+     * После записи через репозиторий убирает затронутые строки из кэша и (publish)
+     * сообщает о них другим узлам через ChangeLog — в той же транзакции, что и запись
+     * (из локального кэша — после её коммита).
+     * Вставка не публикуется: новой строки в чужих кэшах ещё нет. Изменяющий @Query
+     * (UPDATE ... RETURNING и т.п.) затрагивает неизвестные строки — сбрасывается весь тип.
+     */
+    private void invalidateCache(Method method, Object[] args, boolean publish) {
+        OffHeapEntityCache cache = settings.getEntityCache();
+        ChangeLog changeLog = publish ? settings.getChangeLog() : null;
+        if (cache == null && changeLog == null) return;
+        Class<?> entityType = getEntityType(repositoryInterface);
+        Query query = method.getAnnotation(Query.class);
+        if (query != null) {
+            if (isReadQuery(query)) return;
+            if (cache != null) evictAfterCommit(() -> cache.invalidateAll(entityType));
+            if (changeLog != null) changeLog.recordAll(entityType);
+            return;
+        }
+        List<Object> ids = new ArrayList<>();
+        switch (method.getName()) {
+            case "update" -> ids.add(idOf(args[0]));
+            case "delete" -> ids.add(args[0]);
+            case "saveAll" -> {
+                for (Object e : (Collection<?>) args[0]) ids.add(idOf(e));
+            }
+            case "deleteAllById" -> {
+                // каскад удаляет строки других типов — проще сбросить всё
+                if (args.length > 1 && Boolean.TRUE.equals(args[1])) {
+                    if (cache != null) evictAfterCommit(cache::clear);
+                    if (changeLog != null) changeLog.recordEverything();
+                    return;
+                }
+                ids.addAll((Collection<?>) args[0]);
+            }
+            default -> {
+                return;
+            }
+        }
+        if (cache != null) {
+            evictAfterCommit(() -> {
+                for (Object id : ids) cache.invalidate(entityType, id);
+            });
+        }
+        if (changeLog != null) changeLog.record(entityType, ids);
+    }
+
+    /**
+     * Внутри транзакции строки убираются из кэша после коммита: до него параллельное чтение
+     * видит прежнюю зафиксированную строку и вернуло бы её в кэш. Вне транзакции — сразу.
+     */
+    private static void evictAfterCommit(Runnable evict) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            evict.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict.run();
+            }
+        });
+    }
+
+    private Object idOf(Object entity) {
+        CrudMetadata md = getCrudMetadata(getEntityType(repositoryInterface));
+        try {
+            Field f = entity.getClass().getDeclaredField(md.getIdFieldName());
+            f.setAccessible(true);
+            return f.get(entity);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    /** create(entity) / update / delete внутри UnitOfWork запоминаются вместо выполнения */
+    private boolean defer(UnitOfWork uow, Method method, Object[] args) {
+        if (method.isAnnotationPresent(Query.class)) return false;
+        String name = method.getName();
+        boolean write = (name.equals("create") && method.getParameterCount() == 1)
+                || name.equals("update") || name.equals("delete");
+        if (!write) return false;
+        if (shardRouter != null) {
+            throw new RepositoryException("Unit of work is not supported for sharded " + repositoryInterface.getName());
+        }
+        UnitOfWork.Writer writer = unitOfWorkWriter();
+        switch (name) {
+            case "create" -> uow.registerNew(writer, args[0]);
+            case "update" -> uow.registerDirty(writer, args[0]);
+            default -> uow.registerRemoved(writer, args[0]);
+        }
+        if (replicaRouter != null) replicaRouter.wrote();
+        return true;
+    }
+
+    private UnitOfWork.Writer unitOfWorkWriter() {
+        UnitOfWork.Writer writer = unitOfWorkWriter;
+        if (writer == null) {
+            synchronized (this) {
+                writer = unitOfWorkWriter;
+                if (writer == null) {
+                    Class<?> entityType = getEntityType(repositoryInterface);
+                    CrudMetadata md = getCrudMetadata(entityType);
+                    writer = new UnitOfWorkWriter(jdbcTemplate, entityMapper,
+                            md.getTableName(), entityType,
+                            md.getIdFieldName(), md.getIdColumn(),
+                            settings.getBatchSize(), settings.getChangeLog());
+                    unitOfWorkWriter = writer;
+                }
+            }
+        }
+        return writer;
+    }
+
+    /** запросы executor'ов идут через обёртку, если включено наблюдение за отдельными запросами */
+    private JdbcTemplate instrument(JdbcTemplate jdbc) {
+        return settings.getSlowQueryLog() != null
+                ? new InstrumentedJdbcTemplate(jdbc, settings.getSlowQueryLog())
+                : jdbc;
     }
 
     private QueryExecutor createExecutor(Method method) {
+        if (shardRouter != null) {
+            if (exportArgs(method) != null) {
+                throw new RepositoryException("Export is not supported on sharded repositories");
+            }
+            List<QueryExecutor> perShard = new ArrayList<>();
+            for (JdbcTemplate shard : shardRouter.getShards()) {
+                perShard.add(createExecutor(method, instrument(shard)));
+            }
+            return shardRouter.route(method, perShard);
+        }
+        if (replicaRouter == null) {
+            return createExecutor(method, jdbcTemplate);
+        }
+        Query query = method.getAnnotation(Query.class);
+        // блокирующее чтение — на primary: реплика только читает
+        boolean read = query != null
+                ? isReadQuery(query) && !LOCKING_CLAUSE.matcher(query.value().toLowerCase(Locale.ROOT)).find()
+                : READ_METHODS.contains(method.getName());
+        if (!read) {
+            return replicaRouter.writes(createExecutor(method, jdbcTemplate));
+        }
+        List<QueryExecutor> onReplicas = new ArrayList<>();
+        for (JdbcTemplate replica : replicaRouter.getReplicas()) {
+            onReplicas.add(createExecutor(method, instrument(replica)));
+        }
+        return replicaRouter.reads(createExecutor(method, jdbcTemplate), onReplicas);
+    }
+
+    /** executor над конкретным JdbcTemplate; его запросы за вызов идут через одно соединение и под сроком вызова */
+    private QueryExecutor createExecutor(Method method, JdbcTemplate jdbc) {
+        QueryExecutor executor = newExecutor(method, jdbc);
+        QueryExecutor scoped = ConnectionScope.around(jdbc.getDataSource(), settings.getStatementCacheSize(), executor);
+        if (settings.isConnectionPerInvocation()) return scoped;
+        // срок применяется через область соединения, поэтому при Deadline она нужна всегда
+        return args -> Deadline.current() != null ? scoped.execute(args) : executor.execute(args);
+    }
+
+    private QueryExecutor newExecutor(Method method, JdbcTemplate jdbc) {
         Query q = method.getAnnotation(Query.class);
+        int[] io = exportArgs(method);
+        if (q != null && io != null) {
+            return new ExportExecutor(jdbc, entityMapper, q.value(), paramNames(method),
+                    getEntityType(repositoryInterface), settings.getExportFetchSize(), io[0], io[1]);
+        }
+        if (q != null && PrimitiveQueryExecutor.supports(method.getReturnType())) {
+            return new PrimitiveQueryExecutor(jdbc, q.value(), paramNames(method), method.getReturnType());
+        }
         if (q != null) {
             // 1) определяем тип возвращаемого элемента и isList
             Class<?> elementType = method.getReturnType();
@@ -53,58 +360,141 @@ public class RepositoryInvocationHandler implements InvocationHandler {
             }
 
             // 2) строим paramNames по @Param или имени аргумента
-            Parameter[] params = method.getParameters();
-            String[] paramNames = new String[params.length];
-            for (int i = 0; i < params.length; i++) {
-                Param p = params[i].getAnnotation(Param.class);
-                paramNames[i] = (p != null && !p.value().isEmpty())
-                        ? p.value()
-                        : params[i].getName();
-            }
+            String[] paramNames = paramNames(method);
 
             // 3) создаём RelationQueryExecutor
             return new RelationQueryExecutor(
-                    jdbcTemplate,
+                    jdbc,
                     entityMapper,
                     q.value(),
                     paramNames,
                     elementType,
-                    isList
+                    isList,
+                    EntityGraph.from(method.getAnnotation(FetchGraph.class)),
+                    settings.getEntityCache()
             );
         }
 
-        return createCrudExecutor(method);
+        return createCrudExecutor(method, jdbc);
+    }
+
+    /**
+     * @Query только читает: SELECT или WITH без изменяющих частей (data-modifying CTE PostgreSQL,
+     * SELECT ... FROM FINAL TABLE (UPDATE ...) H2); блокирующее SELECT ... FOR UPDATE — чтение.
+     * Сомнительный случай считается записью.
+     */
+    private static boolean isReadQuery(Query query) {
+        String sql = query.value().stripLeading().toLowerCase(Locale.ROOT);
+        if (!sql.startsWith("select") && !sql.startsWith("with")) return false;
+        // FOR UPDATE / FOR SHARE блокирует строки, но не меняет их
+        return !WRITE_KEYWORD.matcher(LOCKING_CLAUSE.matcher(sql).replaceFirst("")).find();
+    }
+
+    private static String[] paramNames(Method method) {
+        Parameter[] params = method.getParameters();
+        String[] paramNames = new String[params.length];
+        for (int i = 0; i < params.length; i++) {
+            Param p = params[i].getAnnotation(Param.class);
+            paramNames[i] = (p != null && !p.value().isEmpty())
+                    ? p.value()
+                    : params[i].getName();
+        }
+        return paramNames;
+    }
+
+    /** индексы параметров Writer / OutputStream и ExportFormat у метода-выгрузки; null — не выгрузка */
+    private static int[] exportArgs(Method method) {
+        int out = -1, format = -1;
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (Writer.class.isAssignableFrom(types[i]) || OutputStream.class.isAssignableFrom(types[i])) out = i;
+            if (types[i] == ExportFormat.class) format = i;
+        }
+        return out >= 0 && format >= 0 ? new int[]{out, format} : null;
     }
 
-    private QueryExecutor createCrudExecutor(Method method) {
+    private QueryExecutor createCrudExecutor(Method method, JdbcTemplate jdbc) {
         Class<?> entityType = getEntityType(repositoryInterface);
         CrudMetadata md    = getCrudMetadata(entityType);
+        // без ленивых колонок — "*", иначе явный список без них
+        String columns = new EntityMetadata(entityType).selectList();
         return switch (method.getName()) {
-            case "findById" -> new RelationQueryExecutor(
-                    jdbcTemplate, entityMapper,
-                    String.format("SELECT * FROM %s WHERE %s = ?", md.getTableName(), md.getIdColumn()),
-                    new String[] {"id"}, // единственный параметр
-                    entityType, false
-            );
+            case "findById" -> {
+                RelationQueryExecutor query = new RelationQueryExecutor(
+                        jdbc, entityMapper,
+                        String.format("SELECT %s FROM %s WHERE %s = ?", columns, md.getTableName(), md.getIdColumn()),
+                        new String[] {"id"}, // единственный параметр
+                        entityType, false,
+                        EntityGraph.from(method.getAnnotation(FetchGraph.class)),
+                        settings.getEntityCache()
+                );
+                QueryExecutor loader = query;
+                if (settings.getFindByIdBatchWindowMicros() > 0 && new EntityMetadata(entityType).idFields.size() == 1) {
+                    // связи пачки грузятся executor'ом списка того же типа
+                    RelationQueryExecutor batchRelations = new RelationQueryExecutor(
+                            jdbc, entityMapper,
+                            String.format("SELECT %s FROM %s", columns, md.getTableName()),
+                            new String[0], entityType, true,
+                            EntityGraph.from(method.getAnnotation(FetchGraph.class)),
+                            settings.getEntityCache()
+                    );
+                    loader = new BatchingFindByIdExecutor(query, batchRelations, jdbc, entityMapper, entityType,
+                            settings.getFindByIdBatchWindowMicros(),
+                            Math.min(settings.getFindByIdMaxBatchSize(), settings.getBatchSize()));
+                }
+                yield settings.getEntityCache() != null
+                        ? new CachedFindByIdExecutor(query, loader, settings.getEntityCache(), entityType)
+                        : loader;
+            }
+            case "findAllById" -> new FindAllByIdExecutor(jdbc, entityMapper,
+                    new RelationQueryExecutor(
+                            jdbc, entityMapper,
+                            String.format("SELECT %s FROM %s", columns, md.getTableName()),
+                            new String[0], entityType, true,
+                            EntityGraph.from(method.getAnnotation(FetchGraph.class)),
+                            settings.getEntityCache()
+                    ),
+                    settings.getEntityCache(), entityType, settings.getBatchSize());
             case "findAll" -> new RelationQueryExecutor(
-                    jdbcTemplate, entityMapper,
-                    String.format("SELECT * FROM %s", md.getTableName()),
-                    new String[0], entityType, true
+                    jdbc, entityMapper,
+                    String.format("SELECT %s FROM %s", columns, md.getTableName()),
+                    new String[0], entityType, true,
+                    EntityGraph.from(method.getAnnotation(FetchGraph.class)),
+                    settings.getEntityCache()
             );
             case "countAll" -> new PreparedQueryExecutor(
-                    jdbcTemplate, entityMapper,
+                    jdbc, entityMapper,
                     String.format("SELECT COUNT(*) FROM %s", md.getTableName()),
                     Long.class, false
             );
-            case "create" -> new InsertExecutor(jdbcTemplate, entityMapper, md.getTableName(), entityType);
-            case "update" -> new UpdateExecutor(jdbcTemplate, entityMapper,
+            case "create" -> method.getParameterCount() > 1
+                    ? new GraphInsertExecutor(jdbc, entityMapper, entityType)
+                    : new InsertExecutor(jdbc, entityMapper, md.getTableName(), entityType,
+                            shardRouter != null && shardRouter.isIdAssigned());
+            case "update" -> new UpdateExecutor(jdbc, entityMapper,
                     md.getTableName(), entityType,
-                    md.getIdFieldName(), md.getIdColumn());
+                    md.getIdFieldName(), md.getIdColumn(),
+                    settings.getBatchSize());
             case "delete" -> new PreparedQueryExecutor(
-                    jdbcTemplate, entityMapper,
+                    jdbc, entityMapper,
                     String.format("DELETE FROM %s WHERE %s = ?", md.getTableName(), md.getIdColumn()),
                     void.class, false
             );
+            case "saveAll" -> new UpsertExecutor(jdbc, entityMapper,
+                    md.getTableName(), entityType,
+                    md.getIdFieldName(), md.getIdColumn(),
+                    getDialect(), settings.getBatchSize());
+            case "deleteAllById" -> new DeleteExecutor(jdbc,
+                    md.getTableName(), entityType, md.getIdColumn(),
+                    settings.getBatchSize());
+            case "existsById" -> new ExistsExecutor(jdbc, md.getTableName(), md.getIdColumn());
+            case "countRelation" -> new RelationCountExecutor(jdbc, entityType, settings.getBatchSize());
+            case "exportAll" -> new ExportExecutor(jdbc, entityMapper,
+                    String.format("SELECT %s FROM %s", columns, md.getTableName()),
+                    new String[0], entityType, settings.getExportFetchSize(), 0, 1);
+            case "bulkLoad" -> new BulkLoadExecutor(jdbc.getDataSource(), entityMapper,
+                    md.getTableName(), entityType,
+                    settings.getBatchSize(), settings.getBulkCommitSize(), settings.getBulkWriterThreads());
             default -> throw new RepositoryException("Unsupported CRUD method: " + method.getName());
         };
     }
@@ -128,5 +518,12 @@ public class RepositoryInvocationHandler implements InvocationHandler {
         return metadataCache.computeIfAbsent(entityType, CrudMetadata::from);
     }
 
+    private SqlDialect getDialect() {
+        if (settings.getDialect() == null) {
+            settings.setDialect(SqlDialect.detect(jdbcTemplate));
+        }
+        return settings.getDialect();
+    }
+
 
 }
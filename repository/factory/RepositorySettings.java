@@ -0,0 +1,56 @@
+package com.db.kurs.orm.repository.factory;
+
+import com.db.kurs.orm.repository.factory.cache.ChangeLog;
+import com.db.kurs.orm.repository.factory.cache.OffHeapEntityCache;
+import com.db.kurs.orm.repository.factory.jdbc.ConnectionScope;
+import com.db.kurs.orm.repository.factory.jdbc.ReplicaRouter;
+import com.db.kurs.orm.repository.factory.jdbc.SlowQueryLog;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Необязательные настройки репозиториев, общие для всех executor'ов одного RepositoryFactoryBean.
+ */
+@Getter
+@Setter
+public class RepositorySettings {
+    /** диалект БД; null — определить по DatabaseMetaData при первом обращении */
+    private SqlDialect dialect;
+    /** размер JDBC-батча и максимальное число параметров в одном IN (...) */
+    private int batchSize = 500;
+    /** журнал медленных запросов; null — выключен */
+    private SlowQueryLog slowQueryLog;
+    /** реплики для читающих методов (findById, findAll, countAll, existsById, countRelation, @Query) */
+    private List<DataSource> replicas = new ArrayList<>();
+    /** выбор реплики для очередного чтения */
+    private ReplicaRouter.Balancing replicaBalancing = ReplicaRouter.Balancing.ROUND_ROBIN;
+    /** сколько мс после записи поток читает с primary; 0 — не закреплять */
+    private long readYourWritesMillis = 0;
+    /** шарды; если заданы, сущности распределяются по хэшу @ShardKey / @Id */
+    private List<JdbcTemplate> shards = new ArrayList<>();
+    /** bulkLoad: строк на одну транзакцию (округляется вверх до целого числа батчей) */
+    private int bulkCommitSize = 50_000;
+    /** bulkLoad: потоков записи, у каждого своё соединение */
+    private int bulkWriterThreads = 1;
+    /** exportAll и @Query-выгрузки: строк за одно обращение к курсору */
+    private int exportFetchSize = 1000;
+    /** кэш строк вне кучи для findById и загрузки @ManyToOne; null — выключен */
+    private OffHeapEntityCache entityCache;
+    /** журнал изменений для инвалидации кэшей других узлов; null — выключен */
+    private ChangeLog changeLog;
+    /** все запросы одного вызова репозитория — на одном соединении (ConnectionScope) */
+    private boolean connectionPerInvocation = true;
+    /** переиспользуемых PreparedStatement'ов на область соединения; 0 — без переиспользования */
+    private int statementCacheSize = ConnectionScope.DEFAULT_STATEMENT_CACHE_SIZE;
+    /** findById: окно сбора одновременных вызовов в один IN-запрос, мкс; 0 — без микробатчинга */
+    private long findByIdBatchWindowMicros = 0;
+    /** findById: разных id в одной пачке (не больше batchSize) */
+    private int findByIdMaxBatchSize = 64;
+    /** ограничение одновременных вызовов репозитория (вместо @Bulkhead на интерфейсе); null — без ограничения */
+    private ConcurrencyLimit concurrencyLimit;
+}
@@ -0,0 +1,38 @@
+package com.db.kurs.orm.repository.factory;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Locale;
+
+/**
+ * Диалект БД там, где стандартного SQL не хватает (upsert и т.п.).
+ */
+public enum SqlDialect {
+    /** INSERT ... ON CONFLICT (id) DO UPDATE */
+    POSTGRESQL,
+    /** стандартный MERGE INTO ... USING (VALUES ...) */
+    H2,
+    /** любая другая БД со стандартным MERGE */
+    STANDARD;
+
+    public boolean supportsOnConflict() {
+        return this == POSTGRESQL;
+    }
+
+    public static SqlDialect fromProductName(String productName) {
+        String name = productName == null ? "" : productName.toLowerCase(Locale.ROOT);
+        if (name.contains("postgres")) return POSTGRESQL;
+        if (name.contains("h2"))       return H2;
+        return STANDARD;
+    }
+
+    /**
+     * Определяет диалект по DatabaseMetaData (занимает соединение на один вызов).
+     */
+    public static SqlDialect detect(JdbcTemplate jdbc) {
+        String product = jdbc.execute((ConnectionCallback<String>) con ->
+                con.getMetaData().getDatabaseProductName());
+        return fromProductName(product);
+    }
+}
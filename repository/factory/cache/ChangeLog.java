@@ -0,0 +1,259 @@
+package com.db.kurs.orm.repository.factory.cache;
+
+import com.db.kurs.orm.metadata.EntityMetadata;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Межузловая инвалидация кэшей через таблицу в той же БД, без брокера сообщений.
+ * Запись через репозиторий добавляет строки (seq, table_name, entity_id) в ту же транзакцию,
+ * что и сама запись; каждый узел опрашивает таблицу по возрастанию seq (раз в pollIntervalMillis)
+ * и убирает совпавшие строки из своего OffHeapEntityCache и у слушателей.
+ * entity_id NULL — изменилась вся таблица, table_name '*' — изменилось всё.
+ * <p>
+ * Номера seq выдаются при вставке, а видны после коммита, поэтому меньший seq может появиться
+ * позже большего: пропущенные номера перечитываются до gapTimeoutMillis (потом считаются
+ * откатом или пропуском последовательности). Строки старше retentionMillis удаляются.
+ * <p>
+ * Жизненный цикл: createTableIfMissing() (или своя миграция), start() при старте узла, close().
+ */
+@Slf4j
+public class ChangeLog implements AutoCloseable {
+    public static final String DEFAULT_TABLE = "orm_change_log";
+    private static final String ALL_TABLES = "*";
+    private static final int MAX_GAPS = 1000;   // пропусков, перечитываемых за один опрос
+
+    /** получатель изменений: tableName null — всё, id null — вся таблица */
+    public interface Listener {
+        void changed(String tableName, Object id);
+    }
+
+    /** период опроса, мс */
+    @Getter
+    @Setter
+    private long pollIntervalMillis = 1000;
+    /** сколько хранить записи журнала, мс */
+    @Getter
+    @Setter
+    private long retentionMillis = TimeUnit.HOURS.toMillis(1);
+    /** как долго ждать коммита пропущенного seq, мс */
+    @Getter
+    @Setter
+    private long gapTimeoutMillis = TimeUnit.MINUTES.toMillis(1);
+    /** строк журнала за один опрос */
+    @Getter
+    @Setter
+    private int pollLimit = 10_000;
+
+    private final JdbcTemplate jdbc;
+    @Getter
+    private final String tableName;
+    private final OffHeapEntityCache cache;
+
+    /** таблица → тип сущности (для приведения id и инвалидации кэша) */
+    private final Map<String, Class<?>> types = new ConcurrentHashMap<>();
+    private final Map<String, Class<?>> idTypes = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** последний прочитанный seq и пропуски перед ним: seq → когда замечен */
+    private long lastSeq = -1;
+    private final Map<Long, Long> gaps = new TreeMap<>();
+    private long lastPrune;
+    private ScheduledExecutorService poller;
+
+    /** @param cache кэш этого узла; null — только слушатели */
+    public ChangeLog(JdbcTemplate jdbc, OffHeapEntityCache cache) {
+        this(jdbc, cache, DEFAULT_TABLE);
+    }
+
+    public ChangeLog(JdbcTemplate jdbc, OffHeapEntityCache cache, String tableName) {
+        this.jdbc = jdbc;
+        this.cache = cache;
+        this.tableName = tableName;
+    }
+
+    /** создаёт таблицу журнала, если её нет (SQL:2003 identity: H2, PostgreSQL 10+, Oracle 12c+) */
+    public void createTableIfMissing() {
+        try {
+            jdbc.queryForList("SELECT seq FROM " + tableName + " WHERE 1 = 0");
+        } catch (RuntimeException missing) {
+            jdbc.execute("CREATE TABLE " + tableName + " ("
+                    + "seq BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "table_name VARCHAR(128) NOT NULL, "
+                    + "entity_id VARCHAR(255), "
+                    + "changed_at TIMESTAMP NOT NULL)");
+            log.info("Created change log table {}", tableName);
+        }
+    }
+
+    /** тип сущности, изменения которого приходят от других узлов */
+    public void register(Class<?> entityType) {
+        EntityMetadata meta = new EntityMetadata(entityType);
+        String key = meta.tableName.toLowerCase(Locale.ROOT);
+        types.put(key, entityType);
+        if (meta.idFields.size() == 1) idTypes.put(key, meta.idFields.get(0).getType());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** изменились строки с этими id */
+    public void record(Class<?> entityType, Collection<?> ids) {
+        String table = new EntityMetadata(entityType).tableName;
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (Object id : ids) {
+            if (id != null) rows.add(new Object[]{table, String.valueOf(id), now});
+        }
+        insert(rows);
+    }
+
+    /** изменилась вся таблица типа */
+    public void recordAll(Class<?> entityType) {
+        insert(Collections.singletonList(new Object[]{
+                new EntityMetadata(entityType).tableName, null, new Timestamp(System.currentTimeMillis())}));
+    }
+
+    /** изменилось неизвестно что (например, каскадное удаление) */
+    public void recordEverything() {
+        insert(Collections.singletonList(new Object[]{
+                ALL_TABLES, null, new Timestamp(System.currentTimeMillis())}));
+    }
+
+    private void insert(List<Object[]> rows) {
+        if (rows.isEmpty()) return;
+        jdbc.batchUpdate("INSERT INTO " + tableName + " (table_name, entity_id, changed_at) VALUES (?, ?, ?)", rows);
+    }
+
+    /** запускает фоновый опрос; история до запуска не применяется */
+    public synchronized void start() {
+        if (poller != null) return;
+        Long max = jdbc.queryForObject("SELECT MAX(seq) FROM " + tableName, Long.class);
+        lastSeq = max == null ? 0 : max;
+        lastPrune = System.currentTimeMillis();
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "orm-change-log");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        log.debug("Change log polling {} every {} ms from seq {}", tableName, pollIntervalMillis, lastSeq);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+            if (System.currentTimeMillis() - lastPrune >= Math.max(pollIntervalMillis, retentionMillis / 4)) {
+                prune();
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Change log poll failed: {}", ex.toString());
+        }
+    }
+
+    /**
+     * Применяет новые записи журнала (и дошедшие пропуски).
+     * @return число применённых записей
+     */
+    public synchronized int poll() {
+        if (lastSeq < 0) {
+            Long max = jdbc.queryForObject("SELECT MAX(seq) FROM " + tableName, Long.class);
+            lastSeq = max == null ? 0 : max;
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        gaps.values().removeIf(seen -> now - seen > gapTimeoutMillis);
+
+        String sql = "SELECT seq, table_name, entity_id FROM " + tableName + " WHERE seq > ?";
+        List<Object> params = new ArrayList<>();
+        params.add(lastSeq);
+        if (!gaps.isEmpty()) {
+            sql += " OR seq IN (" + String.join(",", Collections.nCopies(gaps.size(), "?")) + ")";
+            params.addAll(gaps.keySet());
+        }
+        sql += " ORDER BY seq";
+        int limit = pollLimit;
+        List<Object[]> rows = jdbc.query(sql, (ResultSetExtractor<List<Object[]>>) rs -> {
+            List<Object[]> out = new ArrayList<>();
+            while (out.size() < limit && rs.next()) {
+                out.add(new Object[]{rs.getLong(1), rs.getString(2), rs.getString(3)});
+            }
+            return out;
+        }, params.toArray());
+
+        for (Object[] row : rows) {
+            long seq = (Long) row[0];
+            if (seq > lastSeq) {
+                for (long missing = lastSeq + 1; missing < seq && gaps.size() < MAX_GAPS; missing++) {
+                    gaps.put(missing, now);
+                }
+                lastSeq = seq;
+            } else {
+                gaps.remove(seq);
+            }
+            apply((String) row[1], (String) row[2]);
+        }
+        if (!rows.isEmpty()) log.debug("Change log applied {} records up to seq {}", rows.size(), lastSeq);
+        return rows.size();
+    }
+
+    private void apply(String table, String rawId) {
+        if (ALL_TABLES.equals(table)) {
+            if (cache != null) cache.clear();
+            listeners.forEach(l -> l.changed(null, null));
+            return;
+        }
+        String key = table.toLowerCase(Locale.ROOT);
+        Class<?> type = types.get(key);
+        Object id = rawId == null ? null : parseId(idTypes.get(key), rawId);
+        if (cache != null && type != null) {
+            if (rawId == null || id == null) cache.invalidateAll(type);
+            else cache.invalidate(type, id);
+        }
+        listeners.forEach(l -> l.changed(table, rawId == null ? null : id != null ? id : rawId));
+    }
+
+    /** id из текста к типу @Id; null — тип не восстанавливается из строки */
+    private static Object parseId(Class<?> type, String raw) {
+        if (type == null) return null;
+        try {
+            if (type == Long.class || type == long.class) return Long.valueOf(raw);
+            if (type == Integer.class || type == int.class) return Integer.valueOf(raw);
+            if (type == Short.class || type == short.class) return Short.valueOf(raw);
+            if (type == String.class) return raw;
+            if (type == UUID.class) return UUID.fromString(raw);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        return null;
+    }
+
+    /** удаляет записи старше retentionMillis; @return число удалённых */
+    public int prune() {
+        lastPrune = System.currentTimeMillis();
+        int deleted = jdbc.update("DELETE FROM " + tableName + " WHERE changed_at < ?",
+                new Timestamp(lastPrune - retentionMillis));
+        if (deleted > 0) log.debug("Change log pruned {} records", deleted);
+        return deleted;
+    }
+}
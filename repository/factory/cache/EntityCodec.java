@@ -0,0 +1,256 @@
+package com.db.kurs.orm.repository.factory.cache;
+
+import com.db.kurs.orm.mapper.EntityInstantiator;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.metadata.RelationshipMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Компактная двоичная раскладка строки сущности: те же поля, что заполняет EntityMapper.map
+ * (@Id, @Column, stub @ManyToOne с id цели), в фиксированном порядке, @Id — первым.
+ * Каждое поле: байт «есть значение» и значение в своём формате (числа — big-endian, строки — UTF-8
+ * с длиной). Раскладка компилируется один раз на тип; тип с неподдерживаемым полем не кэшируется.
+ * Record'ы и типы с @EntityConstructor собираются через конструктор, как в EntityMapper.
+ */
+final class EntityCodec {
+    private enum Kind {
+        LONG, INT, SHORT, BYTE, DOUBLE, FLOAT, BOOLEAN, CHAR, STRING, BYTES, BIG_DECIMAL,
+        LOCAL_DATE, LOCAL_TIME, LOCAL_DATE_TIME, INSTANT, DATE, UUID, ENUM, STUB
+    }
+
+    /**
+     * одно поле раскладки; для STUB — тип цели и его @Id (stubCtor null — цель создаётся конструктором);
+     * param — индекс параметра конструктора сущности, -1 — поле пишется после создания
+     */
+    private record Slot(Field field, Kind kind, Constructor<?> stubCtor, Field stubId, Kind stubIdKind, int param) {
+    }
+
+    final Class<?> type;
+    private final Constructor<?> ctor;              // null — сущность создаётся instantiator'ом
+    private final EntityInstantiator instantiator;
+    private final List<Slot> slots = new ArrayList<>();
+
+    /** @throws IllegalArgumentException если у типа есть поле без двоичного формата */
+    EntityCodec(Class<?> type) {
+        this.type = type;
+        EntityMetadata meta = new EntityMetadata(type);
+        if (meta.idFields.size() != 1) {
+            throw new IllegalArgumentException("Cache requires a single @Id: " + type.getName());
+        }
+        this.instantiator = EntityInstantiator.of(type);
+        if (instantiator != null) {
+            this.ctor = null;
+        } else {
+            try {
+                this.ctor = type.getDeclaredConstructor();
+                ctor.setAccessible(true);
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalArgumentException("No default constructor in " + type.getName());
+            }
+        }
+        slots.add(slot(meta.idFields.get(0)));
+        for (Field f : meta.columns.values()) {
+            slots.add(slot(f));
+        }
+        for (RelationshipMetadata rel : meta.relations) {
+            if (rel.type == RelationshipMetadata.RelationType.MANY_TO_ONE && !meta.idFields.contains(rel.field)) {
+                slots.add(slot(rel.field));
+            }
+        }
+    }
+
+    private Slot slot(Field f) {
+        int param = instantiator == null ? -1 : instantiator.indexOf(f);
+        if (f.isAnnotationPresent(com.db.kurs.orm.annotation.link.ManyToOne.class)) {
+            EntityMetadata tm = new EntityMetadata(f.getType());
+            if (tm.idFields.isEmpty()) throw new IllegalArgumentException("No @Id in " + f.getType().getName());
+            Field tid = tm.idFields.get(0);
+            if (EntityInstantiator.of(f.getType()) != null) {
+                return new Slot(f, Kind.STUB, null, tid, kindOf(tid.getType()), param);
+            }
+            try {
+                Constructor<?> c = f.getType().getDeclaredConstructor();
+                c.setAccessible(true);
+                return new Slot(f, Kind.STUB, c, tid, kindOf(tid.getType()), param);
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalArgumentException("No default constructor in " + f.getType().getName());
+            }
+        }
+        return new Slot(f, kindOf(f.getType()), null, null, null, param);
+    }
+
+    private static Kind kindOf(Class<?> t) {
+        if (t == Long.class || t == long.class) return Kind.LONG;
+        if (t == Integer.class || t == int.class) return Kind.INT;
+        if (t == Short.class || t == short.class) return Kind.SHORT;
+        if (t == Byte.class || t == byte.class) return Kind.BYTE;
+        if (t == Double.class || t == double.class) return Kind.DOUBLE;
+        if (t == Float.class || t == float.class) return Kind.FLOAT;
+        if (t == Boolean.class || t == boolean.class) return Kind.BOOLEAN;
+        if (t == Character.class || t == char.class) return Kind.CHAR;
+        if (t == String.class) return Kind.STRING;
+        if (t == byte[].class) return Kind.BYTES;
+        if (t == BigDecimal.class) return Kind.BIG_DECIMAL;
+        if (t == LocalDate.class) return Kind.LOCAL_DATE;
+        if (t == LocalTime.class) return Kind.LOCAL_TIME;
+        if (t == LocalDateTime.class) return Kind.LOCAL_DATE_TIME;
+        if (t == Instant.class) return Kind.INSTANT;
+        if (t == java.util.Date.class) return Kind.DATE;
+        if (t == UUID.class) return Kind.UUID;
+        if (t.isEnum()) return Kind.ENUM;
+        throw new IllegalArgumentException("No binary layout for " + t.getName());
+    }
+
+    /** тип @Id целочисленный: ключ индекса — примитивный long */
+    boolean hasLongId() {
+        Kind k = slots.get(0).kind;
+        return k == Kind.LONG || k == Kind.INT || k == Kind.SHORT || k == Kind.BYTE;
+    }
+
+    Object idOf(Object entity) throws IllegalAccessException {
+        return slots.get(0).field.get(entity);
+    }
+
+    byte[] encode(Object entity) throws IllegalAccessException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            for (Slot s : slots) {
+                Object v = s.field.get(entity);
+                if (s.kind == Kind.STUB && v != null) v = s.stubId.get(v);
+                if (v == null) {
+                    out.writeByte(0);
+                    continue;
+                }
+                out.writeByte(1);
+                write(out, s.kind == Kind.STUB ? s.stubIdKind : s.kind, v);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);   // ByteArrayOutputStream не бросает
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void write(DataOutputStream out, Kind kind, Object v) throws IOException {
+        switch (kind) {
+            case LONG -> out.writeLong((Long) v);
+            case INT -> out.writeInt((Integer) v);
+            case SHORT -> out.writeShort((Short) v);
+            case BYTE -> out.writeByte((Byte) v);
+            case DOUBLE -> out.writeDouble((Double) v);
+            case FLOAT -> out.writeFloat((Float) v);
+            case BOOLEAN -> out.writeBoolean((Boolean) v);
+            case CHAR -> out.writeChar((Character) v);
+            case STRING -> writeBytes(out, ((String) v).getBytes(StandardCharsets.UTF_8));
+            case BYTES -> writeBytes(out, (byte[]) v);
+            case BIG_DECIMAL -> writeBytes(out, ((BigDecimal) v).toString().getBytes(StandardCharsets.US_ASCII));
+            case LOCAL_DATE -> out.writeLong(((LocalDate) v).toEpochDay());
+            case LOCAL_TIME -> out.writeLong(((LocalTime) v).toNanoOfDay());
+            case LOCAL_DATE_TIME -> {
+                LocalDateTime dt = (LocalDateTime) v;
+                out.writeLong(dt.toLocalDate().toEpochDay());
+                out.writeLong(dt.toLocalTime().toNanoOfDay());
+            }
+            case INSTANT -> {
+                out.writeLong(((Instant) v).getEpochSecond());
+                out.writeInt(((Instant) v).getNano());
+            }
+            case DATE -> out.writeLong(((java.util.Date) v).getTime());
+            case UUID -> {
+                out.writeLong(((UUID) v).getMostSignificantBits());
+                out.writeLong(((UUID) v).getLeastSignificantBits());
+            }
+            case ENUM -> out.writeShort(((Enum<?>) v).ordinal());
+            case STUB -> throw new IllegalStateException("nested stub");
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /** собирает сущность из строки, начинающейся с позиции buf.position() */
+    Object decode(ByteBuffer buf) throws ReflectiveOperationException {
+        if (instantiator == null) {
+            Object entity = ctor.newInstance();
+            for (Slot s : slots) {
+                if (buf.get() == 0) continue;
+                s.field.set(entity, value(buf, s));
+            }
+            return entity;
+        }
+        Object[] args = new Object[instantiator.getParameterCount()];
+        Object[] rest = new Object[slots.size()];   // поля вне конструктора
+        for (int i = 0; i < slots.size(); i++) {
+            Slot s = slots.get(i);
+            if (buf.get() == 0) continue;
+            if (s.param >= 0) args[s.param] = value(buf, s); else rest[i] = value(buf, s);
+        }
+        Object entity = instantiator.newInstance(args);
+        for (int i = 0; i < slots.size(); i++) {
+            if (rest[i] != null) slots.get(i).field.set(entity, rest[i]);
+        }
+        return entity;
+    }
+
+    private static Object value(ByteBuffer buf, Slot s) throws ReflectiveOperationException {
+        if (s.kind != Kind.STUB) return read(buf, s.kind, s.field.getType());
+        Object id = read(buf, s.stubIdKind, s.stubId.getType());
+        if (s.stubCtor == null) return EntityInstantiator.of(s.field.getType()).stub(s.stubId, id);
+        Object stub = s.stubCtor.newInstance();
+        s.stubId.set(stub, id);
+        return stub;
+    }
+
+    /** только @Id (первое поле) — для вытеснения из индекса */
+    Object decodeId(ByteBuffer buf) {
+        Slot s = slots.get(0);
+        if (buf.get() == 0) return null;
+        return s.kind == Kind.STUB
+                ? read(buf, s.stubIdKind, s.stubId.getType())
+                : read(buf, s.kind, s.field.getType());
+    }
+
+    private static Object read(ByteBuffer buf, Kind kind, Class<?> type) {
+        return switch (kind) {
+            case LONG -> buf.getLong();
+            case INT -> buf.getInt();
+            case SHORT -> buf.getShort();
+            case BYTE -> buf.get();
+            case DOUBLE -> buf.getDouble();
+            case FLOAT -> buf.getFloat();
+            case BOOLEAN -> buf.get() != 0;
+            case CHAR -> buf.getChar();
+            case STRING -> new String(readBytes(buf), StandardCharsets.UTF_8);
+            case BYTES -> readBytes(buf);
+            case BIG_DECIMAL -> new BigDecimal(new String(readBytes(buf), StandardCharsets.US_ASCII));
+            case LOCAL_DATE -> LocalDate.ofEpochDay(buf.getLong());
+            case LOCAL_TIME -> LocalTime.ofNanoOfDay(buf.getLong());
+            case LOCAL_DATE_TIME -> LocalDateTime.of(LocalDate.ofEpochDay(buf.getLong()), LocalTime.ofNanoOfDay(buf.getLong()));
+            case INSTANT -> Instant.ofEpochSecond(buf.getLong(), buf.getInt());
+            case DATE -> new java.util.Date(buf.getLong());
+            case UUID -> new UUID(buf.getLong(), buf.getLong());
+            case ENUM -> type.getEnumConstants()[buf.getShort()];
+            case STUB -> throw new IllegalStateException("nested stub");
+        };
+    }
+
+    private static byte[] readBytes(ByteBuffer buf) {
+        byte[] b = new byte[buf.getInt()];
+        buf.get(b);
+        return b;
+    }
+}
@@ -0,0 +1,103 @@
+package com.db.kurs.orm.repository.factory.cache;
+
+import java.util.Arrays;
+
+/**
+ * Хэш-таблица long → long с открытой адресацией (линейное пробирование) на двух примитивных
+ * массивах: без упаковки ключей и без объекта на запись. Значение 0 зарезервировано под «пусто»,
+ * поэтому хранимые значения должны быть положительными. Не потокобезопасна.
+ */
+final class LongIndex {
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    LongIndex() {
+        this(16);
+    }
+
+    LongIndex(int capacity) {
+        int cap = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+        keys = new long[cap];
+        values = new long[cap];
+        mask = cap - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** значение по ключу или 0 */
+    long get(long key) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (values[i] == 0) return 0;
+            if (keys[i] == key) return values[i];
+        }
+    }
+
+    void put(long key, long value) {
+        if (value <= 0) throw new IllegalArgumentException("value must be positive");
+        if ((size + 1) * 4L > keys.length * 3L) resize(keys.length << 1);
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (values[i] == 0) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    /** удаляет ключ, если ему сопоставлено expected (0 — любое значение) */
+    boolean remove(long key, long expected) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (values[i] == 0) return false;
+            if (keys[i] == key) {
+                if (expected != 0 && values[i] != expected) return false;
+                shiftBack(i);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /** удаление без «надгробий»: сдвигаем назад записи той же цепочки */
+    private void shiftBack(int hole) {
+        for (int i = (hole + 1) & mask; values[i] != 0; i = (i + 1) & mask) {
+            int home = slot(keys[i]);
+            // запись в i может занять дыру, если её домашний слот не лежит между дырой и i
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys, oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,317 @@
+package com.db.kurs.orm.repository.factory.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Кэш строк сущностей вне кучи: строки в компактной двоичной раскладке (EntityCodec) лежат
+ * в direct ByteBuffer'ах, на куче — только индексы (тип, id) → адрес, для целочисленных id
+ * на примитивных массивах (LongIndex). При попадании сущность собирается заново, поэтому
+ * вызывающий код получает собственный экземпляр.
+ * <p>
+ * Память — кольцо сегментов фиксированного размера в пределах maxBytes: запись дописывается
+ * в текущий сегмент, при заполнении кольца самый старый сегмент вытесняется целиком (FIFO).
+ * Перезапись и invalidate только убирают ключ из индекса; место освобождается с вытеснением.
+ * <p>
+ * Кэшируются только колонки строки и id связей @ManyToOne; коллекции и цели связей
+ * по-прежнему грузятся запросами. Записи мимо репозиториев требуют invalidate вручную.
+ * <p>
+ * Строку, прочитанную из БД при промахе, кладут через put(entity, stamp) с отметкой stamp(),
+ * взятой до чтения: если между чтением и put строку инвалидировали (параллельный update),
+ * прочитанное могло устареть и не кэшируется. Отметки ведутся по полосам хэша ключа —
+ * соседний ключ может лишь зря пропустить put.
+ * Один экземпляр можно отдать нескольким RepositoryFactoryBean.
+ */
+@Slf4j
+public class OffHeapEntityCache {
+    private static final int HEADER = 8;   // int regionId + int длина тела
+    private static final int STAMP_STRIPES = 1024;
+
+    /** кэшируемый тип: раскладка и индекс id → адрес */
+    private static final class Region {
+        final int id;
+        final EntityCodec codec;
+        final LongIndex longIndex;          // для целочисленных id
+        final Map<Object, Long> objectIndex; // для прочих
+
+        Region(int id, EntityCodec codec) {
+            this.id = id;
+            this.codec = codec;
+            boolean longId = codec != null && codec.hasLongId();
+            this.longIndex = longId ? new LongIndex() : null;
+            this.objectIndex = longId ? null : new HashMap<>();
+        }
+
+        long find(Object key) {
+            if (longIndex != null) return longIndex.get(((Number) key).longValue());
+            Long addr = objectIndex.get(key);
+            return addr == null ? 0 : addr;
+        }
+
+        void bind(Object key, long addr) {
+            if (longIndex != null) longIndex.put(((Number) key).longValue(), addr);
+            else objectIndex.put(key, addr);
+        }
+
+        void unbind(Object key, long expected) {
+            if (longIndex != null) longIndex.remove(((Number) key).longValue(), expected);
+            else if (expected == 0) objectIndex.remove(key);
+            else objectIndex.remove(key, expected);
+        }
+
+        void clear() {
+            if (longIndex != null) longIndex.clear(); else objectIndex.clear();
+        }
+    }
+
+    /** тип без двоичной раскладки (codec == null) больше не пробуем */
+    private static final Region UNSUPPORTED = new Region(-1, null);
+
+    private final int segmentBytes;
+    private final ByteBuffer[] segments;
+    private final int[] fill;              // занято байт в каждом сегменте
+    private int current;                   // сегмент, в который пишем
+
+    private final Map<Class<?>, Region> regions = new ConcurrentHashMap<>();
+    private final Map<Integer, Region> regionsById = new ConcurrentHashMap<>();
+    private final AtomicInteger regionIds = new AtomicInteger();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicLong invalidations = new AtomicLong();   // последовательность отметок
+    private final AtomicLongArray stripeStamps = new AtomicLongArray(STAMP_STRIPES);
+    private volatile long allStamp;   // отметка последнего invalidateAll / clear
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** @param maxBytes бюджет памяти вне кучи, сегменты по 4 МБ (или меньше, если бюджет мал) */
+    public OffHeapEntityCache(long maxBytes) {
+        this(maxBytes, (int) Math.min(4L << 20, Math.max(1024, maxBytes / 2)));
+    }
+
+    /**
+     * @param maxBytes     бюджет памяти вне кучи
+     * @param segmentBytes размер сегмента; строка длиннее сегмента не кэшируется
+     */
+    public OffHeapEntityCache(long maxBytes, int segmentBytes) {
+        long count = Math.max(2, maxBytes / segmentBytes);
+        if (count > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many segments: " + count);
+        this.segmentBytes = segmentBytes;
+        this.segments = new ByteBuffer[(int) count];
+        this.fill = new int[(int) count];
+    }
+
+    /** поддерживает ли кэш тип (одиночный @Id, конструктор без аргументов, поля с двоичной раскладкой) */
+    public boolean supports(Class<?> type) {
+        return region(type) != UNSUPPORTED;
+    }
+
+    /** сущность из кэша (новый экземпляр) или null */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Class<T> type, Object id) {
+        Region r = region(type);
+        if (r == UNSUPPORTED || id == null) return null;
+        lock.readLock().lock();
+        try {
+            long addr = r.find(id);
+            if (addr == 0) {
+                misses.incrementAndGet();
+                return null;
+            }
+            ByteBuffer buf = body(addr);
+            hits.incrementAndGet();
+            return (T) r.codec.decode(buf);
+        } catch (ReflectiveOperationException ex) {
+            log.warn("Off-heap cache: cannot rebuild {} id={}: {}", type.getSimpleName(), id, ex.toString());
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** кладёт (или заменяет) строку сущности; неподдерживаемые типы и сущности без id пропускаются */
+    public void put(Object entity) {
+        put(entity, 0, false);
+    }
+
+    /** отметка инвалидаций строки (type, id): берётся до чтения строки из БД для put(entity, stamp) */
+    public long stamp(Class<?> type, Object id) {
+        return Math.max(allStamp, stripeStamps.get(stripe(type, id)));
+    }
+
+    /** как put(entity), но только если строку не инвалидировали после stamp(type, id) */
+    public void put(Object entity, long stamp) {
+        put(entity, stamp, true);
+    }
+
+    private void put(Object entity, long stamp, boolean checked) {
+        if (entity == null) return;
+        Region r = region(entity.getClass());
+        if (r == UNSUPPORTED) return;
+        Object id;
+        byte[] body;
+        try {
+            id = r.codec.idOf(entity);
+            if (id == null) return;
+            body = r.codec.encode(entity);
+        } catch (IllegalAccessException ex) {
+            return;
+        }
+        int size = HEADER + body.length;
+        lock.writeLock().lock();
+        try {
+            // invalidate отмечает под тем же замком: проверка и запись атомарны относительно него
+            if (checked && stamp(entity.getClass(), id) != stamp) {
+                log.debug("Off-heap cache: {} id={} invalidated while loading, not cached",
+                        entity.getClass().getSimpleName(), id);
+                return;
+            }
+            if (size > segmentBytes) {
+                r.unbind(id, 0);
+                return;
+            }
+            if (fill[current] + size > segmentBytes) advance();
+            ByteBuffer seg = segment(current);
+            int offset = fill[current];
+            seg.putInt(offset, r.id);
+            seg.putInt(offset + 4, body.length);
+            seg.put(offset + HEADER, body);
+            fill[current] += size;
+            r.bind(id, address(current, offset));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidate(Class<?> type, Object id) {
+        if (id == null) return;
+        Region r = regions.get(type);
+        lock.writeLock().lock();
+        try {
+            // отметка ставится и до первого put типа: его может уже читать промах
+            stripeStamps.set(stripe(type, id), invalidations.incrementAndGet());
+            if (r != null && r != UNSUPPORTED) r.unbind(id, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidateAll(Class<?> type) {
+        Region r = regions.get(type);
+        lock.writeLock().lock();
+        try {
+            allStamp = invalidations.incrementAndGet();
+            if (r != null && r != UNSUPPORTED) r.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            allStamp = invalidations.incrementAndGet();
+            for (Region r : regionsById.values()) r.clear();
+            Arrays.fill(fill, 0);
+            current = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** полоса отметок ключа; целые id разных типов (Integer / Long) попадают в одну полосу */
+    private static int stripe(Class<?> type, Object id) {
+        int h = id instanceof Number n && !(id instanceof Double || id instanceof Float)
+                ? Long.hashCode(n.longValue())
+                : Objects.hashCode(id);
+        h = 31 * type.getName().hashCode() + h;
+        h ^= h >>> 16;
+        return h & (STAMP_STRIPES - 1);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** вытесненных сегментов */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /** занято байт вне кучи, включая строки, уже убранные из индекса */
+    public long getUsedBytes() {
+        lock.readLock().lock();
+        try {
+            long sum = 0;
+            for (int f : fill) sum += f;
+            return sum;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Region region(Class<?> type) {
+        return regions.computeIfAbsent(type, t -> {
+            try {
+                Region r = new Region(regionIds.incrementAndGet(), new EntityCodec(t));
+                regionsById.put(r.id, r);
+                return r;
+            } catch (IllegalArgumentException ex) {
+                log.debug("Off-heap cache disabled for {}: {}", t.getSimpleName(), ex.getMessage());
+                return UNSUPPORTED;
+            }
+        });
+    }
+
+    /** переход к следующему сегменту кольца; его старые строки вытесняются */
+    private void advance() {
+        current = (current + 1) % segments.length;
+        if (fill[current] == 0) return;
+        ByteBuffer seg = segments[current];
+        int pos = 0;
+        while (pos < fill[current]) {
+            int regionId = seg.getInt(pos);
+            int len = seg.getInt(pos + 4);
+            Region r = regionsById.get(regionId);
+            if (r != null) {
+                Object id = r.codec.decodeId(seg.duplicate().position(pos + HEADER));
+                if (id != null) r.unbind(id, address(current, pos));
+            }
+            pos += HEADER + len;
+        }
+        fill[current] = 0;
+        evictions.incrementAndGet();
+    }
+
+    private ByteBuffer segment(int index) {
+        if (segments[index] == null) segments[index] = ByteBuffer.allocateDirect(segmentBytes);
+        return segments[index];
+    }
+
+    private ByteBuffer body(long addr) {
+        long a = addr - 1;
+        int seg = (int) (a >>> 32);
+        int offset = (int) a;
+        return segments[seg].duplicate().position(offset + HEADER);
+    }
+
+    /** адрес строки; +1, чтобы 0 означал «нет» */
+    private static long address(int segment, int offset) {
+        return (((long) segment << 32) | offset) + 1;
+    }
+}
@@ -0,0 +1,211 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.repository.Deadline;
+import com.db.kurs.orm.repository.DeadlineExceededException;
+import com.db.kurs.orm.repository.EntityGraph;
+import com.db.kurs.orm.repository.UnitOfWork;
+import com.db.kurs.orm.repository.factory.InvocationContext;
+import com.db.kurs.orm.repository.factory.jdbc.ConnectionScope;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * findById с микробатчингом: одновременные вызовы из разных потоков собираются в пачку
+ * (не дольше windowMicros или до maxBatchSize разных id) и выполняются одним
+ * SELECT ... WHERE id IN (...) со связями, загруженными сразу для всей пачки.
+ * Пачку собирает и выполняет первый пришедший поток на своём соединении, остальные ждут результата.
+ * <p>
+ * Одинаковые id в пачке читаются один раз (single-flight), но каждый вызывающий получает свой
+ * экземпляр сущности — строка маппится столько раз, сколько её ждут.
+ * Размер IN дополняется до степени двойки (не больше maxBatchSize), чтобы разных текстов SQL было немного.
+ * <p>
+ * Внутри транзакции, UnitOfWork или EntityGraph.with(...) вызов выполняется отдельно:
+ * чужое соединение не видит незакоммиченных изменений, а граф у каждого потока свой.
+ * Ошибка запроса пачки достаётся всем её вызовам. Запрос пачки выполняется без срока ведущего
+ * потока и не отменяется его прерыванием; каждый вызов ждёт результат не дольше своего срока.
+ */
+@Slf4j
+public class BatchingFindByIdExecutor implements QueryExecutor {
+    private final QueryExecutor single;
+    private final RelationQueryExecutor relations;
+    private final JdbcTemplate jdbc;
+    private final EntityMapper mapper;
+    private final Class<?> entityType;
+    private final Field idField;
+    private final String sqlPrefix;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition closed = lock.newCondition();
+    private Batch open;   // собираемая пачка (под lock)
+
+    /** ожидающие вызовы одной пачки: id → результаты вызовов с этим id */
+    private static final class Batch {
+        final Map<Object, List<CompletableFuture<Object>>> waiters = new LinkedHashMap<>();
+    }
+
+    /**
+     * @param single    обычный findById — для вызовов вне пачек
+     * @param relations executor списка того же типа — загрузка связей пачки (withRelations)
+     */
+    public BatchingFindByIdExecutor(QueryExecutor single, RelationQueryExecutor relations,
+                                    JdbcTemplate jdbc, EntityMapper mapper, Class<?> entityType,
+                                    long windowMicros, int maxBatchSize) {
+        EntityMetadata meta = new EntityMetadata(entityType);
+        if (meta.idFields.size() != 1) {
+            throw new RepositoryException("findById batching requires a single @Id: " + entityType.getName());
+        }
+        this.single = single;
+        this.relations = relations;
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+        this.entityType = entityType;
+        this.idField = meta.idFields.get(0);
+        this.idField.setAccessible(true);
+        this.sqlPrefix = String.format("SELECT %s FROM %s WHERE %s IN (",
+                meta.selectList(), meta.tableName, meta.idColumns.get(0));
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        Object id = args[0];
+        if (id == null || TransactionSynchronizationManager.isActualTransactionActive()
+                || UnitOfWork.current() != null || EntityGraph.current() != null) {
+            return single.execute(args);
+        }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Batch batch;
+        boolean leader;
+        lock.lock();
+        try {
+            leader = open == null;
+            if (leader) open = new Batch();
+            batch = open;
+            batch.waiters.computeIfAbsent(ColumnLayout.idKey(id), k -> new ArrayList<>()).add(result);
+            if (batch.waiters.size() >= maxBatchSize) {
+                open = null;
+                closed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (leader) {
+            boolean interrupted = collect(batch);
+            run(batch);
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        return await(result);
+    }
+
+    /**
+     * Ждёт окончания окна или заполнения пачки.
+     * @return был ли поток прерван (флаг восстанавливается после запроса: пачку ждут и другие)
+     */
+    private boolean collect(Batch batch) {
+        lock.lock();
+        try {
+            long remaining = windowNanos;
+            while (open == batch && remaining > 0) {
+                remaining = closed.awaitNanos(remaining);
+            }
+            return false;
+        } catch (InterruptedException ex) {
+            return true;
+        } finally {
+            if (open == batch) open = null;
+            lock.unlock();
+        }
+    }
+
+    /** запрос пачки не ограничен сроком и прерыванием ведущего: его результат ждут и другие вызовы */
+    private void run(Batch batch) {
+        Deadline.Scope detached = ConnectionScope.detach();
+        try {
+            ConnectionScope scope = ConnectionScope.open(jdbc.getDataSource(), 0);
+            try {
+                query(batch);
+            } finally {
+                scope.close();
+            }
+        } catch (RuntimeException | Error ex) {
+            for (List<CompletableFuture<Object>> waiting : batch.waiters.values()) {
+                for (CompletableFuture<Object> f : waiting) f.completeExceptionally(ex);
+            }
+        } finally {
+            detached.close();
+        }
+    }
+
+    /** один запрос IN (...) за всю пачку; каждый ожидающий получает свою копию сущности */
+    private void query(Batch batch) {
+        List<Object> ids = new ArrayList<>(batch.waiters.keySet());
+        int size = Integer.highestOneBit(ids.size() - 1) << 1;   // степень двойки не меньше ids.size()
+        Object[] params = new Object[Math.max(ids.size(), Math.min(size, maxBatchSize))];
+        for (int i = 0; i < params.length; i++) params[i] = ids.get(Math.min(i, ids.size() - 1));
+        String sql = sqlPrefix + String.join(",", Collections.nCopies(params.length, "?")) + ")";
+        log.debug("Executing batched findById for {} ids ({} callers): {}",
+                ids.size(), batch.waiters.values().stream().mapToInt(List::size).sum(), sql);
+
+        Map<CompletableFuture<Object>, Object> found = new HashMap<>();
+        List<Object> roots = new ArrayList<>();
+        jdbc.query(sql, (RowCallbackHandler) rs -> {
+            Object entity = mapper.map(rs, entityType);
+            List<CompletableFuture<Object>> waiting = batch.waiters.get(ColumnLayout.idKey(idOf(entity)));
+            if (waiting == null) return;
+            for (int i = 0; i < waiting.size(); i++) {
+                Object copy = i == 0 ? entity : mapper.map(rs, entityType);
+                found.put(waiting.get(i), copy);
+                roots.add(copy);
+            }
+        }, params);
+        if (!roots.isEmpty()) relations.withRelations(roots);
+        for (List<CompletableFuture<Object>> waiting : batch.waiters.values()) {
+            for (CompletableFuture<Object> f : waiting) f.complete(found.get(f));
+        }
+    }
+
+    /** результат вызова; ожидание ограничено текущим Deadline */
+    private static Object await(CompletableFuture<Object> result) {
+        Deadline deadline = Deadline.current();
+        try {
+            return deadline == null
+                    ? result.get()
+                    : result.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException re) throw re;
+            if (ex.getCause() instanceof Error err) throw err;
+            throw new RepositoryException("Batched findById failed: " + ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new DeadlineExceededException(InvocationContext.currentMethod(), "waiting for batched findById");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for batched findById");
+        }
+    }
+
+    private Object idOf(Object entity) {
+        try {
+            return idField.get(entity);
+        } catch (IllegalAccessException ex) {
+            throw new RepositoryException("Cannot read id of " + entityType.getSimpleName() + ": " + ex.getMessage());
+        }
+    }
+}
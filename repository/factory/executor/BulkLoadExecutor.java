@@ -0,0 +1,261 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.repository.BulkLoadResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * bulkLoad: потоковая вставка из Iterator / Stream.
+ * Вызывающий поток читает источник и режет его на батчи по batchSize; батчи через
+ * ограниченную очередь (по два на поток записи) уходят потокам записи, поэтому медленная БД
+ * притормаживает чтение источника, и в памяти одновременно лежит не больше нескольких батчей.
+ * Каждый поток записи держит своё соединение и один PreparedStatement, фиксирует транзакцию
+ * каждые commitSize строк. Ошибка откатывает транзакцию: все её батчи попадают в failedBatches,
+ * загрузка продолжается. Сгенерированные ключи не читаются.
+ */
+@Slf4j
+public class BulkLoadExecutor implements QueryExecutor {
+    private static final Batch END = new Batch(-1, List.of());
+    private static final long QUEUE_POLL_MILLIS = 100;   // как часто проверять потоки записи при полной очереди
+
+    private final DataSource dataSource;
+    private final ColumnLayout layout;
+    private final String sql;
+    private final int[] sqlTypes;
+    private final int batchSize;
+    private final int batchesPerCommit;
+    private final int writers;
+
+    private record Batch(long firstRow, List<Object> rows) {
+    }
+
+    /**
+     * @param dataSource   источник соединений для потоков записи
+     * @param entityMapper EntityMapper (для getFields)
+     * @param tableName    имя таблицы из @Table
+     * @param entityType   класс-сущность
+     * @param batchSize    строк в JDBC-батче
+     * @param commitSize   строк на транзакцию
+     * @param writers      число потоков записи
+     */
+    public BulkLoadExecutor(DataSource dataSource,
+                            EntityMapper entityMapper,
+                            String tableName,
+                            Class<?> entityType,
+                            int batchSize,
+                            int commitSize,
+                            int writers) {
+        if (dataSource == null) throw new RepositoryException("bulkLoad requires a DataSource");
+        this.dataSource = dataSource;
+        this.layout = new ColumnLayout(entityMapper, entityType);
+        // ленивые колонки пишутся вместе с остальными, как в InsertExecutor
+        List<String> columns = layout.insertColumnNames();
+        this.sqlTypes = layout.insertSqlTypes();
+        this.sql = String.format("INSERT INTO %s (%s) VALUES (%s)",
+                tableName,
+                String.join(", ", columns),
+                String.join(", ", Collections.nCopies(columns.size(), "?")));
+        this.batchSize = Math.max(1, batchSize);
+        this.batchesPerCommit = Math.max(1, (commitSize + this.batchSize - 1) / this.batchSize);
+        this.writers = Math.max(1, writers);
+        log.debug("Prepared bulk INSERT SQL: {}", sql);
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        if (args[0] instanceof Stream<?> stream) {
+            try (stream) {
+                return load(stream.iterator());
+            }
+        }
+        return load((Iterator<?>) args[0]);
+    }
+
+    private BulkLoadResult load(Iterator<?> source) {
+        long start = System.nanoTime();
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(writers * 2);
+        AtomicLong inserted = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<BulkLoadResult.FailedBatch> failures = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService pool = Executors.newFixedThreadPool(writers, r -> {
+            Thread t = new Thread(r, "orm-bulk-load");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            workers.add(pool.submit(() -> {
+                write(queue, inserted, failed, failures);
+                return null;
+            }));
+        }
+        try {
+            long row = 0;
+            List<Object> rows = new ArrayList<>(batchSize);
+            while (source.hasNext()) {
+                rows.add(source.next());
+                if (rows.size() == batchSize) {
+                    put(queue, new Batch(row, rows), workers);
+                    row += rows.size();
+                    rows = new ArrayList<>(batchSize);
+                }
+            }
+            if (!rows.isEmpty()) put(queue, new Batch(row, rows), workers);
+            for (int i = 0; i < writers; i++) put(queue, END, workers);
+            for (Future<?> w : workers) w.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("bulkLoad interrupted");
+        } catch (ExecutionException ex) {
+            throw new RepositoryException("bulkLoad writer failed: " + ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BulkLoadResult result = new BulkLoadResult(inserted.get(), failed.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures);
+        log.debug("bulkLoad finished: {}", result);
+        return result;
+    }
+
+    /**
+     * Кладёт батч в очередь, пока жив хоть один поток записи: если все они упали,
+     * очередь никто не разберёт, и источник дальше не читается.
+     */
+    private static void put(BlockingQueue<Batch> queue, Batch batch, List<Future<?>> workers)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(batch, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (workers.stream().noneMatch(Future::isDone)) continue;
+            for (Future<?> w : workers) {
+                if (w.isDone()) w.get();   // бросает ошибку упавшего потока
+            }
+            if (workers.stream().allMatch(Future::isDone)) {
+                throw new RepositoryException("bulkLoad writers stopped before the source was consumed");
+            }
+        }
+    }
+
+    /** цикл потока записи: батчи из очереди до маркера END */
+    private void write(BlockingQueue<Batch> queue,
+                       AtomicLong inserted,
+                       AtomicLong failed,
+                       List<BulkLoadResult.FailedBatch> failures) throws InterruptedException {
+        List<Batch> uncommitted = new ArrayList<>();
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            while (true) {
+                Batch batch = queue.take();
+                if (batch == END) break;
+                uncommitted.add(batch);
+                try {
+                    if (con == null) {
+                        con = dataSource.getConnection();
+                        con.setAutoCommit(false);
+                    }
+                    if (ps == null) ps = con.prepareStatement(sql);
+                    bind(ps, batch.rows());
+                    ps.executeBatch();
+                    if (uncommitted.size() >= batchesPerCommit) {
+                        con.commit();
+                        commitDone(uncommitted, inserted);
+                    }
+                } catch (SQLException | IllegalAccessException | RuntimeException ex) {
+                    clearBatch(ps);
+                    rollback(con, uncommitted, failed, failures, ex);
+                }
+            }
+            if (!uncommitted.isEmpty()) {
+                try {
+                    con.commit();
+                    commitDone(uncommitted, inserted);
+                } catch (SQLException ex) {
+                    rollback(con, uncommitted, failed, failures, ex);
+                }
+            }
+        } finally {
+            // прервано (ошибка источника): незафиксированное не должно зафиксироваться при close
+            if (!uncommitted.isEmpty() && con != null) {
+                try {
+                    con.rollback();
+                } catch (SQLException ignored) {
+                }
+            }
+            close(ps, con);
+        }
+    }
+
+    private void bind(PreparedStatement ps, List<Object> rows) throws SQLException, IllegalAccessException {
+        for (Object entity : rows) {
+            layout.initVersion(entity);
+            List<Object> values = layout.insertValues(entity);
+            for (int i = 0; i < values.size(); i++) {
+                StatementCreatorUtils.setParameterValue(ps, i + 1, sqlTypes[i], values.get(i));
+            }
+            ps.addBatch();
+        }
+    }
+
+    private void commitDone(List<Batch> uncommitted, AtomicLong inserted) {
+        for (Batch b : uncommitted) {
+            inserted.addAndGet(b.rows().size());
+            for (Object entity : b.rows()) {
+                try {
+                    layout.markLazyClean(entity);
+                } catch (IllegalAccessException ignored) {
+                    // поля уже прочитаны bind(): доступ есть
+                }
+            }
+        }
+        uncommitted.clear();
+    }
+
+    private static void rollback(Connection con,
+                                 List<Batch> uncommitted,
+                                 AtomicLong failed,
+                                 List<BulkLoadResult.FailedBatch> failures,
+                                 Exception cause) {
+        log.warn("bulkLoad transaction of {} batches rolled back: {}", uncommitted.size(), cause.toString());
+        try {
+            if (con != null) con.rollback();
+        } catch (SQLException ex) {
+            log.warn("bulkLoad rollback failed: {}", ex.toString());
+        }
+        for (Batch b : uncommitted) {
+            failed.addAndGet(b.rows().size());
+            failures.add(new BulkLoadResult.FailedBatch(b.firstRow(), b.rows().size(), cause.toString()));
+        }
+        uncommitted.clear();
+    }
+
+    private static void clearBatch(PreparedStatement ps) {
+        try {
+            if (ps != null) ps.clearBatch();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static void close(PreparedStatement ps, Connection con) {
+        try {
+            if (ps != null) ps.close();
+        } catch (SQLException ignored) {
+        }
+        try {
+            if (con != null) con.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
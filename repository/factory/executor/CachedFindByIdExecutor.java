@@ -0,0 +1,52 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.repository.factory.cache.OffHeapEntityCache;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * findById поверх кэша строк: при попадании строка корня берётся из кэша, связи догружаются
+ * тем же RelationQueryExecutor; при промахе — обычный запрос, строка кладётся в кэш,
+ * если её не инвалидировали за время чтения (OffHeapEntityCache.stamp).
+ * Внутри транзакции прочитанное в кэш не кладётся: транзакция видит свои незафиксированные
+ * изменения и может откатиться.
+ */
+public class CachedFindByIdExecutor implements QueryExecutor {
+    private final RelationQueryExecutor query;
+    private final QueryExecutor loader;
+    private final OffHeapEntityCache cache;
+    private final Class<?> entityType;
+
+    public CachedFindByIdExecutor(RelationQueryExecutor query, OffHeapEntityCache cache, Class<?> entityType) {
+        this(query, query, cache, entityType);
+    }
+
+    /** @param loader загрузка при промахе (например, BatchingFindByIdExecutor над query) */
+    public CachedFindByIdExecutor(RelationQueryExecutor query, QueryExecutor loader,
+                                  OffHeapEntityCache cache, Class<?> entityType) {
+        this.query = query;
+        this.loader = loader;
+        this.cache = cache;
+        this.entityType = entityType;
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        Object cached = cache.get(entityType, args[0]);
+        if (cached != null) {
+            List<Object> roots = new ArrayList<>(1);
+            roots.add(cached);
+            return query.withRelations(roots);
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loader.execute(args);
+        }
+        long stamp = cache.stamp(entityType, args[0]);
+        Object entity = loader.execute(args);
+        if (entity != null) cache.put(entity, stamp);
+        return entity;
+    }
+}
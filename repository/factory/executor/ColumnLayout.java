@@ -0,0 +1,191 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.annotation.link.JoinColumn;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.repository.LazyValue;
+
+import java.lang.reflect.Field;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * Раскладка колонок сущности для записи: простые @Column (без @Id и без связей)
+ * и FK владеющих связей (@ManyToOne, owner @OneToOne). Общая для INSERT, UPDATE и upsert,
+ * чтобы все executor'ы писали одинаковый набор колонок в одинаковом порядке.
+ * Ленивые колонки (@Column(fetch = LAZY)) в columnNames не входят и перечислены отдельно.
+ */
+public class ColumnLayout {
+    /** простые @Column */
+    public final List<Field> simpleFields;
+    /** @ManyToOne, owner @OneToOne */
+    public final List<Field> relationFields;
+    /** имена колонок: сначала простые, затем @JoinColumn.name() связей */
+    public final List<String> columnNames;
+    /** java.sql.Types для каждой колонки из columnNames */
+    public final int[] sqlTypes;
+    /** поле @Version (входит в simpleFields) или null */
+    public final Field versionField;
+    /** индекс колонки версии в columnNames, -1 — без версии */
+    public final int versionIndex;
+    /** поля LazyValue ленивых колонок */
+    public final List<Field> lazyFields = new ArrayList<>();
+    /** имена ленивых колонок, по индексу lazyFields */
+    public final List<String> lazyColumnNames = new ArrayList<>();
+    /** java.sql.Types значений ленивых колонок */
+    public final int[] lazySqlTypes;
+
+    private final List<Field> relationIdFields; // @Id целевых сущностей, по индексу relationFields
+
+    public ColumnLayout(EntityMapper entityMapper, Class<?> entityType) {
+        Map<String, Field> simple = entityMapper.getFields(entityType);
+        this.simpleFields = new ArrayList<>(simple.values());
+
+        this.relationFields = new ArrayList<>();
+        for (Field f : entityType.getDeclaredFields()) {
+            if (f.isAnnotationPresent(com.db.kurs.orm.annotation.link.ManyToOne.class) ||
+                    (f.isAnnotationPresent(com.db.kurs.orm.annotation.link.OneToOne.class) &&
+                            f.getAnnotation(com.db.kurs.orm.annotation.link.OneToOne.class).mappedBy().isEmpty())) {
+                f.setAccessible(true);
+                relationFields.add(f);
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        for (var e : simple.entrySet()) {
+            names.add(e.getKey());
+            types.add(mapJavaTypeToSqlType(e.getValue().getType()));
+        }
+        this.relationIdFields = new ArrayList<>();
+        for (Field rf : relationFields) {
+            JoinColumn jc = rf.getAnnotation(JoinColumn.class);
+            if (jc == null) throw new RepositoryException("Relation missing @JoinColumn on " + rf.getName());
+            names.add(jc.name());
+            // тип — тот же, что и у PK целевой сущности; но JDBC примитивно: OTHER
+            types.add(Types.OTHER);
+            relationIdFields.add(entityMapper.getFieldWithIdAnnotation(rf.getType()));
+        }
+        this.columnNames = Collections.unmodifiableList(names);
+        this.sqlTypes = types.stream().mapToInt(i -> i).toArray();
+
+        this.versionField = new EntityMetadata(entityType).versionField;
+        this.versionIndex = versionField == null ? -1 : simpleFields.indexOf(versionField);
+        if (versionField != null && (versionIndex < 0 || nextVersion(1L, versionField.getType()) == null)) {
+            throw new RepositoryException("@Version must be an int or long column: " + versionField.getName());
+        }
+
+        Map<String, Field> lazy = new EntityMetadata(entityType).lazyColumns;
+        this.lazySqlTypes = new int[lazy.size()];
+        for (var e : lazy.entrySet()) {
+            lazySqlTypes[lazyFields.size()] = mapJavaTypeToSqlType(LazyColumnLoader.valueType(e.getValue()));
+            lazyFields.add(e.getValue());
+            lazyColumnNames.add(e.getKey());
+        }
+    }
+
+    /** колонки INSERT: columnNames, затем ленивые колонки */
+    public List<String> insertColumnNames() {
+        List<String> names = new ArrayList<>(columnNames);
+        names.addAll(lazyColumnNames);
+        return names;
+    }
+
+    /** java.sql.Types колонок insertColumnNames() */
+    public int[] insertSqlTypes() {
+        int[] types = Arrays.copyOf(sqlTypes, sqlTypes.length + lazySqlTypes.length);
+        System.arraycopy(lazySqlTypes, 0, types, sqlTypes.length, lazySqlTypes.length);
+        return types;
+    }
+
+    /** значения колонок insertColumnNames(): values(), затем lazyValues() */
+    public List<Object> insertValues(Object entity) throws IllegalAccessException {
+        List<Object> params = values(entity);
+        params.addAll(lazyValues(entity));
+        return params;
+    }
+
+    /**
+     * Значения ленивых колонок для INSERT: заданное в коде или (у копии загруженной
+     * сущности) прочитанное из исходной строки; поле null — NULL.
+     */
+    public List<Object> lazyValues(Object entity) throws IllegalAccessException {
+        List<Object> params = new ArrayList<>(lazyFields.size());
+        for (Field f : lazyFields) {
+            LazyValue<?> v = (LazyValue<?>) f.get(entity);
+            params.add(v == null ? null : v.get());
+        }
+        return params;
+    }
+
+    /** после записи: заданные в коде значения больше не считаются изменёнными */
+    public void markLazyClean(Object entity) throws IllegalAccessException {
+        for (Field f : lazyFields) {
+            LazyValue<?> v = (LazyValue<?>) f.get(entity);
+            if (v != null) v.markClean();
+        }
+    }
+
+    /** перед INSERT: версия null / 0 становится 1 (у record'а — только в values()) */
+    public void initVersion(Object entity) throws IllegalAccessException {
+        if (versionField == null || entity.getClass().isRecord()) return;
+        Object v = versionField.get(entity);
+        if (v == null || ((Number) v).longValue() == 0) {
+            versionField.set(entity, nextVersion(0L, versionField.getType()));
+        }
+    }
+
+    /** version + 1 в типе поля; null — тип не поддерживается */
+    public static Object nextVersion(Object version, Class<?> type) {
+        long next = ((Number) version).longValue() + 1;
+        if (type == Long.class || type == long.class) return next;
+        if (type == Integer.class || type == int.class) return (int) next;
+        return null;
+    }
+
+    /** id ещё не присвоен: null, а у примитивного поля — 0 (значение по умолчанию) */
+    public static boolean isUnsetId(Field idField, Object id) {
+        if (id == null) return true;
+        return idField.getType().isPrimitive() && id instanceof Number n && n.longValue() == 0;
+    }
+
+    /** ключ id для сопоставления со строками: целые id сравниваются как long (аргумент может быть Integer при поле Long) */
+    public static Object idKey(Object id) {
+        if (id instanceof Integer || id instanceof Short || id instanceof Byte) return ((Number) id).longValue();
+        return id;
+    }
+
+    /**
+     * Значения колонок сущности в порядке columnNames (для связей — id stub'а).
+     * Версия null — 1, как после initVersion (record'у её не записать в поле).
+     */
+    public List<Object> values(Object entity) throws IllegalAccessException {
+        List<Object> params = new ArrayList<>(columnNames.size() + 2);
+        for (Field fld : simpleFields) {
+            params.add(fld.get(entity));
+        }
+        if (versionIndex >= 0) {
+            Object v = params.get(versionIndex);
+            if (v == null) params.set(versionIndex, nextVersion(0L, versionField.getType()));
+        }
+        for (int i = 0; i < relationFields.size(); i++) {
+            Object related = relationFields.get(i).get(entity);
+            params.add(related == null ? null : relationIdFields.get(i).get(related));
+        }
+        return params;
+    }
+
+    public static int mapJavaTypeToSqlType(Class<?> cls) {
+        if (cls == String.class)          return Types.VARCHAR;
+        if (cls == Integer.class|| cls==int.class)    return Types.INTEGER;
+        if (cls == Long.class   || cls==long.class)   return Types.BIGINT;
+        if (cls == Boolean.class|| cls==boolean.class)return Types.BOOLEAN;
+        if (cls == Double.class || cls==double.class)  return Types.DOUBLE;
+        if (cls == Float.class  || cls==float.class)   return Types.FLOAT;
+        if (cls == java.util.Date.class
+                || cls == java.sql.Timestamp.class)            return Types.TIMESTAMP;
+        if (cls == byte[].class)           return Types.BLOB;
+        return Types.OTHER;
+    }
+}
@@ -0,0 +1,107 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.metadata.RelationshipMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+/**
+ * deleteAllById: удаление пачками DELETE ... WHERE id IN (...).
+ * При cascade = true перед удалением корней тем же IN-списком удаляются
+ * зависимые строки: дети @OneToMany / inverse @OneToOne (рекурсивно, через подзапросы)
+ * и строки joinTable для @ManyToMany. Число запросов на чанк не зависит от числа детей.
+ */
+@Slf4j
+public class DeleteExecutor implements QueryExecutor {
+    private static final String IDS = "%1$s";
+
+    private final JdbcTemplate jdbc;
+    private final int batchSize;
+    private final String deleteSql;          // корни
+    private final List<String> cascadeSql;   // зависимые строки, от самых глубоких к корню
+
+    /**
+     * @param jdbc       JdbcTemplate
+     * @param tableName  имя таблицы из @Table
+     * @param entityType класс-сущность
+     * @param idColumn   имя колонки в БД для @Id
+     * @param batchSize  максимальное число id в одном IN (...)
+     */
+    public DeleteExecutor(JdbcTemplate jdbc,
+                          String tableName,
+                          Class<?> entityType,
+                          String idColumn,
+                          int batchSize) {
+        this.jdbc = jdbc;
+        this.batchSize = batchSize;
+        this.deleteSql = "DELETE FROM " + tableName + " WHERE " + idColumn + " IN (" + IDS + ")";
+
+        List<String> cascade = new ArrayList<>();
+        Set<Class<?>> path = new HashSet<>();
+        path.add(entityType);
+        collectCascade(new EntityMetadata(entityType), IDS, path, cascade);
+        this.cascadeSql = Collections.unmodifiableList(cascade);
+        log.debug("Prepared DELETE SQL: {} | cascade: {}", deleteSql, cascadeSql);
+    }
+
+    /**
+     * @param meta      владелец связей
+     * @param parentIds SQL-выражение со списком id удаляемых строк владельца
+     *                  (для корня — плейсхолдеры, ниже — подзапрос)
+     */
+    private void collectCascade(EntityMetadata meta,
+                                String parentIds,
+                                Set<Class<?>> path,
+                                List<String> out) {
+        for (RelationshipMetadata rel : meta.relations) {
+            switch (rel.type) {
+                case MANY_TO_MANY -> {
+                    String ownerCol = rel.ownerJoinColumn(meta.idColumns.get(0));
+                    out.add("DELETE FROM " + rel.joinTable + " WHERE " + ownerCol + " IN (" + parentIds + ")");
+                }
+                case ONE_TO_MANY, ONE_TO_ONE -> {
+                    if (rel.mappedBy == null || rel.mappedBy.isEmpty()) continue; // FK у нас, не у детей
+                    EntityMetadata cm = new EntityMetadata(rel.targetType);
+                    String fkCol = rel.mappedByColumn();
+                    // циклы (например, дерево на одной таблице) дальше не раскрываем
+                    if (!cm.idColumns.isEmpty() && path.add(rel.targetType)) {
+                        String childIds = "SELECT " + cm.idColumns.get(0) + " FROM " + cm.tableName
+                                + " WHERE " + fkCol + " IN (" + parentIds + ")";
+                        collectCascade(cm, childIds, path, out);
+                        path.remove(rel.targetType);
+                    }
+                    out.add("DELETE FROM " + cm.tableName + " WHERE " + fkCol + " IN (" + parentIds + ")");
+                }
+                default -> { }
+            }
+        }
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        Collection<?> ids = (Collection<?>) args[0];
+        boolean cascade = args.length > 1 && Boolean.TRUE.equals(args[1]);
+        if (ids == null || ids.isEmpty()) return 0L;
+
+        List<Object> all = new ArrayList<>(new LinkedHashSet<>(ids));
+        long deleted = 0;
+        for (int from = 0; from < all.size(); from += batchSize) {
+            Object[] chunk = all.subList(from, Math.min(from + batchSize, all.size())).toArray();
+            String marks = String.join(",", Collections.nCopies(chunk.length, "?"));
+            if (cascade) {
+                for (String tpl : cascadeSql) {
+                    String sql = String.format(tpl, marks);
+                    log.debug("Executing cascade DELETE: {} | {} ids", sql, chunk.length);
+                    jdbc.update(sql, chunk);
+                }
+            }
+            String sql = String.format(deleteSql, marks);
+            log.debug("Executing DELETE: {} | {} ids", sql, chunk.length);
+            deleted += jdbc.update(sql, chunk);
+        }
+        return deleted;
+    }
+}
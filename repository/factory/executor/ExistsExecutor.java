@@ -0,0 +1,31 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.orm.mapper.QueryExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+/**
+ * existsById: дешёвая проверка SELECT 1 ... без маппинга сущности и загрузки связей.
+ */
+@Slf4j
+public class ExistsExecutor implements QueryExecutor {
+    private final JdbcTemplate jdbc;
+    private final String sql;
+
+    /**
+     * @param jdbc      JdbcTemplate
+     * @param tableName имя таблицы из @Table
+     * @param idColumn  имя колонки в БД для @Id
+     */
+    public ExistsExecutor(JdbcTemplate jdbc, String tableName, String idColumn) {
+        this.jdbc = jdbc;
+        this.sql = String.format("SELECT 1 FROM %s WHERE %s = ?", tableName, idColumn);
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        log.debug("Executing EXISTS: {} | params: {}", sql, args[0]);
+        return jdbc.query(sql, (ResultSetExtractor<Boolean>) rs -> rs.next(), args[0]);
+    }
+}
@@ -0,0 +1,279 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.metadata.RelationshipMetadata;
+import com.db.kurs.orm.repository.ExportFormat;
+import com.db.kurs.orm.repository.factory.jdbc.ConnectionScope;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.*;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Выгрузка строк запроса прямо из курсора в Writer / OutputStream (UTF-8) как CSV или NDJSON,
+ * без построения сущностей: в памяти одновременно одна строка и буфер вывода.
+ * Колонки и их порядок берутся из EntityMetadata (@Id, @Column, FK @ManyToOne), значения
+ * приводятся к типам полей по правилам EntityMapper. Прочие колонки результата (проекции в @Query)
+ * выгружаются следом, значения — как вернул драйвер.
+ * Вне транзакции выгрузка идёт на одном соединении с autoCommit=false (восстанавливается после):
+ * иначе PostgreSQL игнорирует fetchSize и читает весь результат в память.
+ * Возвращает число выгруженных строк; поток вывода сбрасывается, но не закрывается.
+ */
+@Slf4j
+public class ExportExecutor implements QueryExecutor {
+    private final JdbcTemplate jdbc;
+    private final EntityMapper mapper;
+    private final ParsedSql parsed;
+    private final List<ExportColumn> entityColumns = new ArrayList<>();
+    private final int fetchSize;
+    private final int outputArg;
+    private final int formatArg;
+
+    /** колонка выгрузки: имя, номер в ResultSet и тип поля (null — значение как есть) */
+    private record ExportColumn(String name, int index, Class<?> type) {
+    }
+
+    /**
+     * @param jdbc       JdbcTemplate
+     * @param mapper     EntityMapper (приведение значений)
+     * @param sql        SELECT, возможно с :name / ?1 параметрами
+     * @param paramNames имена параметров метода
+     * @param entityType класс-сущность, чьи колонки выгружаются
+     * @param fetchSize  строк за одно обращение драйвера к курсору
+     * @param outputArg  индекс аргумента Writer / OutputStream
+     * @param formatArg  индекс аргумента ExportFormat
+     */
+    public ExportExecutor(JdbcTemplate jdbc,
+                          EntityMapper mapper,
+                          String sql,
+                          String[] paramNames,
+                          Class<?> entityType,
+                          int fetchSize,
+                          int outputArg,
+                          int formatArg) {
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+        this.parsed = new ParsedSql(sql, paramNames);
+        this.fetchSize = fetchSize;
+        this.outputArg = outputArg;
+        this.formatArg = formatArg;
+
+        EntityMetadata meta = new EntityMetadata(entityType);
+        for (int i = 0; i < meta.idFields.size(); i++) {
+            entityColumns.add(new ExportColumn(meta.idColumns.get(i), -1, idType(meta.idFields.get(i))));
+        }
+        meta.columns.forEach((col, f) -> entityColumns.add(new ExportColumn(col, -1, f.getType())));
+        for (RelationshipMetadata rel : meta.relations) {
+            if (rel.type != RelationshipMetadata.RelationType.MANY_TO_ONE || rel.joinColumns.isEmpty()) continue;
+            entityColumns.add(new ExportColumn(rel.joinColumns.get(0).name(), -1,
+                    idType(new EntityMetadata(rel.field.getType()).idFields.get(0))));
+        }
+        log.debug("Prepared export SQL: {}", parsed.sql);
+    }
+
+    private static Class<?> idType(java.lang.reflect.Field f) {
+        return f.isAnnotationPresent(com.db.kurs.orm.annotation.link.ManyToOne.class) ? null : f.getType();
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        Object target = args[outputArg];
+        ExportFormat format = (ExportFormat) args[formatArg];
+        if (target == null || format == null) {
+            throw new RepositoryException("Export requires an output and a format");
+        }
+        Writer out = target instanceof OutputStream os
+                ? new OutputStreamWriter(os, StandardCharsets.UTF_8)
+                : (Writer) target;
+        Writer buffered = new BufferedWriter(out, 64 * 1024);
+        Object[] sqlArgs = sqlArgs(args);
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return export(sqlArgs, buffered, format);
+        }
+        // вне транзакции: курсор с fetchSize драйвер PostgreSQL открывает только при autoCommit=false,
+        // иначе весь результат читается в память. Область держит одно соединение на оба шага
+        ConnectionScope scope = ConnectionScope.open(jdbc.getDataSource(), 0);
+        try {
+            boolean restore = Boolean.TRUE.equals(jdbc.execute((ConnectionCallback<Boolean>) con -> {
+                if (!con.getAutoCommit()) return false;
+                con.setAutoCommit(false);
+                return true;
+            }));
+            boolean done = false;
+            try {
+                long rows = export(sqlArgs, buffered, format);
+                done = true;
+                return rows;
+            } finally {
+                if (restore) endReadOnly(done);
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    private long export(Object[] sqlArgs, Writer buffered, ExportFormat format) {
+        PreparedStatementCreator psc = new ExportStatementCreator(parsed.sql);
+        PreparedStatementSetter pss = ps -> {
+            ps.setFetchSize(fetchSize);   // после настроек JdbcTemplate, поэтому имеет приоритет
+            new ArgumentPreparedStatementSetter(sqlArgs).setValues(ps);
+        };
+        try {
+            Long rows = jdbc.query(psc, pss, rs -> {
+                try {
+                    return write(rs, buffered, format);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            buffered.flush();
+            return rows;
+        } catch (UncheckedIOException | IOException ex) {
+            throw new RepositoryException("Export failed: " + ex.getMessage());
+        }
+    }
+
+    /** завершает читающую транзакцию выгрузки и возвращает соединению autoCommit */
+    private void endReadOnly(boolean commit) {
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            try {
+                if (commit) con.commit(); else con.rollback();
+            } finally {
+                con.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    /** аргументы SQL: по плейсхолдерам, либо все, кроме вывода и формата */
+    private Object[] sqlArgs(Object[] args) {
+        if (parsed.paramOrder != null) return parsed.bind(args);
+        List<Object> rest = new ArrayList<>();
+        for (int i = 0; args != null && i < args.length; i++) {
+            if (i != outputArg && i != formatArg) rest.add(args[i]);
+        }
+        return rest.toArray();
+    }
+
+    private long write(ResultSet rs, Writer out, ExportFormat format) throws SQLException, IOException {
+        List<ExportColumn> columns = resolve(rs.getMetaData());
+        if (format == ExportFormat.CSV) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) out.write(',');
+                csv(out, columns.get(i).name());
+            }
+            out.write('\n');
+        }
+        long rows = 0;
+        while (rs.next()) {
+            if (format == ExportFormat.CSV) {
+                for (int i = 0; i < columns.size(); i++) {
+                    if (i > 0) out.write(',');
+                    Object v = value(rs, columns.get(i));
+                    if (v != null) csv(out, text(v));
+                }
+            } else {
+                out.write('{');
+                for (int i = 0; i < columns.size(); i++) {
+                    if (i > 0) out.write(',');
+                    json(out, columns.get(i).name());
+                    out.write(':');
+                    Object v = value(rs, columns.get(i));
+                    if (v == null) out.write("null");
+                    else if (v instanceof Boolean || (v instanceof Number n && Double.isFinite(n.doubleValue()))) out.write(v.toString());
+                    else json(out, text(v));
+                }
+                out.write('}');
+            }
+            out.write('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    /** номера колонок сущности в этом ResultSet (по меткам, без учёта регистра) */
+    private List<ExportColumn> resolve(ResultSetMetaData md) throws SQLException {
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = md.getColumnCount(); i >= 1; i--) {
+            labels.put(md.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        List<ExportColumn> columns = new ArrayList<>();
+        Set<Integer> used = new HashSet<>();
+        for (ExportColumn c : entityColumns) {
+            Integer idx = labels.get(c.name().toLowerCase(Locale.ROOT));
+            if (idx != null && used.add(idx)) columns.add(new ExportColumn(c.name(), idx, c.type()));
+        }
+        for (int i = 1; i <= md.getColumnCount(); i++) {
+            if (!used.contains(i)) columns.add(new ExportColumn(md.getColumnLabel(i), i, null));
+        }
+        return columns;
+    }
+
+    private Object value(ResultSet rs, ExportColumn c) throws SQLException {
+        Object raw = rs.getObject(c.index());
+        if (raw == null) return null;
+        if (c.type() != null) return mapper.convertValueToFieldType(raw, c.type());
+        if (raw instanceof Timestamp ts) return ts.toLocalDateTime();
+        if (raw instanceof java.sql.Date d) return d.toLocalDate();
+        if (raw instanceof Blob) return mapper.convertValueToFieldType(raw, byte[].class);
+        if (raw instanceof Clob clob) return clob.getSubString(1, (int) clob.length());
+        return raw;
+    }
+
+    private static String text(Object v) {
+        if (v instanceof byte[] bytes) return Base64.getEncoder().encodeToString(bytes);
+        if (v instanceof Enum<?> e) return e.name();
+        return v.toString();
+    }
+
+    private static void csv(Writer out, String s) throws IOException {
+        boolean quote = s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+        if (!quote) {
+            out.write(s);
+            return;
+        }
+        out.write('"');
+        out.write(s.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private static void json(Writer out, String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (ch < 0x20) out.write(String.format("\\u%04x", (int) ch));
+                    else out.write(ch);
+                }
+            }
+        }
+        out.write('"');
+    }
+
+    /** курсор только вперёд и только чтение; SQL виден журналу медленных запросов */
+    private record ExportStatementCreator(String sql) implements PreparedStatementCreator, SqlProvider {
+        @Override
+        public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+            return con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        }
+
+        @Override
+        public String getSql() {
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.repository.factory.cache.OffHeapEntityCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.util.*;
+
+/**
+ * findAllById: корни читаются запросами SELECT ... WHERE id IN (...) порциями по batchSize,
+ * затем связи всех корней догружаются одним проходом RelationQueryExecutor.withRelations —
+ * число запросов зависит от числа порций и связей, а не от числа id.
+ * Повторяющиеся id читаются один раз, отсутствующие пропускаются.
+ * При preserveOrder результат идёт в порядке первого появления id во входной коллекции.
+ * С кэшем строк найденные в нём корни не запрашиваются, прочитанные кладутся в кэш —
+ * как в CachedFindByIdExecutor, вне транзакции и если строку не инвалидировали за время чтения.
+ */
+@Slf4j
+public class FindAllByIdExecutor implements QueryExecutor {
+    private static final String IDS = "%1$s";
+
+    private final JdbcTemplate jdbc;
+    private final EntityMapper mapper;
+    private final RelationQueryExecutor relations;
+    private final OffHeapEntityCache cache;
+    private final Class<?> entityType;
+    private final Field idField;
+    private final String sql;
+    private final int batchSize;
+
+    /**
+     * @param relations  executor списка того же типа — загрузка связей (withRelations)
+     * @param cache      кэш строк; null — без кэша
+     * @param batchSize  максимальное число id в одном IN (...)
+     */
+    public FindAllByIdExecutor(JdbcTemplate jdbc,
+                               EntityMapper mapper,
+                               RelationQueryExecutor relations,
+                               OffHeapEntityCache cache,
+                               Class<?> entityType,
+                               int batchSize) {
+        EntityMetadata meta = new EntityMetadata(entityType);
+        if (meta.idFields.size() != 1) {
+            throw new RepositoryException("findAllById requires a single @Id: " + entityType.getName());
+        }
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+        this.relations = relations;
+        this.cache = cache;
+        this.entityType = entityType;
+        this.idField = meta.idFields.get(0);
+        this.idField.setAccessible(true);
+        this.sql = "SELECT " + meta.selectList() + " FROM " + meta.tableName
+                + " WHERE " + meta.idColumns.get(0) + " IN (" + IDS + ")";
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object execute(Object[] args) {
+        Collection<Object> requested = (Collection<Object>) args[0];
+        boolean preserveOrder = args.length > 1 && Boolean.TRUE.equals(args[1]);
+        if (requested == null || requested.isEmpty()) return new ArrayList<>();
+
+        Map<Object, Object> ids = new LinkedHashMap<>();   // ключ сравнения → id как передан
+        for (Object id : requested) {
+            if (id != null) ids.putIfAbsent(ColumnLayout.idKey(id), id);
+        }
+        List<Object> roots = new ArrayList<>(ids.size());
+        List<Object> missing = new ArrayList<>(ids.size());
+        for (Object id : ids.values()) {
+            Object cached = cache == null ? null : cache.get(entityType, id);
+            if (cached != null) roots.add(cached); else missing.add(id);
+        }
+
+        boolean fill = cache != null && !TransactionSynchronizationManager.isActualTransactionActive();
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<Object> chunk = missing.subList(from, Math.min(missing.size(), from + batchSize));
+            Map<Object, Long> stamps = new HashMap<>();
+            if (fill) {
+                for (Object id : chunk) stamps.put(ColumnLayout.idKey(id), cache.stamp(entityType, id));
+            }
+            String chunkSql = String.format(sql, String.join(",", Collections.nCopies(chunk.size(), "?")));
+            log.debug("Executing findAllById chunk of {}: {}", chunk.size(), chunkSql);
+            List<Object> loaded = jdbc.query(chunkSql, (ResultSet rs, int rn) -> mapper.map(rs, entityType),
+                    chunk.toArray());
+            if (fill) {
+                for (Object entity : loaded) {
+                    Long stamp = stamps.get(ColumnLayout.idKey(idOf(entity)));
+                    if (stamp != null) cache.put(entity, stamp);
+                }
+            }
+            roots.addAll(loaded);
+        }
+        if (roots.isEmpty()) return roots;
+        if (preserveOrder) sortByIds(roots, ids.keySet(), idField);
+        relations.withRelations(roots);
+        return roots;
+    }
+
+    private Object idOf(Object entity) {
+        try {
+            return idField.get(entity);
+        } catch (IllegalAccessException ex) {
+            throw new RepositoryException("Cannot read id of " + entityType.getSimpleName() + ": " + ex.getMessage());
+        }
+    }
+
+    /** упорядочивает сущности по позиции их id в ids (сущности с чужими id — в конец) */
+    public static void sortByIds(List<Object> entities, Collection<?> ids, Field idField) {
+        Map<Object, Integer> position = new HashMap<>();
+        for (Object id : ids) position.putIfAbsent(ColumnLayout.idKey(id), position.size());
+        entities.sort(Comparator.comparingInt(e -> {
+            try {
+                return position.getOrDefault(ColumnLayout.idKey(idField.get(e)), Integer.MAX_VALUE);
+            } catch (IllegalAccessException ex) {
+                throw new RepositoryException("Cannot read id of " + e.getClass().getSimpleName());
+            }
+        }));
+    }
+}
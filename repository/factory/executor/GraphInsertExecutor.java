@@ -0,0 +1,286 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.metadata.RelationshipMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.util.NumberUtils;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * create(entity, cascade): вставка корня с возвратом сгенерированного ключа и,
+ * при cascade = true, каскадная вставка графа объектов.
+ * Граф обходится по уровням; на каждом уровне сущности одного типа вставляются одним
+ * JDBC-батчем с возвратом сгенерированных ключей, ключ родителя проставляется в поле
+ * mappedBy детей (@OneToMany / inverse @OneToOne). Строки joinTable для @ManyToMany
+ * вставляются в конце, одним батчем на таблицу. Корень и дети @OneToMany / @OneToOne с уже
+ * заданным @Id (id задаёт приложение) вставляются с этим id; цели @ManyToMany с заданным @Id
+ * считаются сохранёнными: в joinTable пишется только связь, их собственные связи обходятся.
+ * Незаданный id — null, у примитивного поля — 0.
+ * Все запросы идут через одно соединение; атомарность обеспечивает внешняя транзакция.
+ */
+@Slf4j
+public class GraphInsertExecutor implements QueryExecutor {
+    private final JdbcTemplate jdbc;
+    private final EntityMapper entityMapper;
+    private final Map<Class<?>, InsertPlan> plans = new HashMap<>();
+
+    /** INSERT для одного типа сущности */
+    private static final class InsertPlan {
+        final EntityMetadata meta;
+        final ColumnLayout layout;
+        final String sql;
+        final int[] sqlTypes;
+        final String assignedSql;      // INSERT с колонкой @Id: id задан приложением
+        final int[] assignedTypes;
+
+        InsertPlan(EntityMapper entityMapper, Class<?> type) {
+            this.meta = new EntityMetadata(type);
+            if (meta.idFields.isEmpty()) {
+                throw new RepositoryException("No @Id field in " + type.getName());
+            }
+            this.layout = new ColumnLayout(entityMapper, type);
+            // ленивые колонки пишутся вместе с остальными, как в InsertExecutor
+            List<String> columns = layout.insertColumnNames();
+            this.sqlTypes = layout.insertSqlTypes();
+            this.sql = String.format("INSERT INTO %s (%s) VALUES (%s)",
+                    meta.tableName,
+                    String.join(", ", columns),
+                    String.join(", ", Collections.nCopies(columns.size(), "?")));
+            this.assignedSql = String.format("INSERT INTO %s (%s, %s) VALUES (%s)",
+                    meta.tableName,
+                    meta.idColumns.get(0),
+                    String.join(", ", columns),
+                    String.join(", ", Collections.nCopies(columns.size() + 1, "?")));
+            this.assignedTypes = new int[sqlTypes.length + 1];
+            assignedTypes[0] = ColumnLayout.mapJavaTypeToSqlType(meta.idFields.get(0).getType());
+            System.arraycopy(sqlTypes, 0, assignedTypes, 1, sqlTypes.length);
+        }
+
+        Field idField() {
+            return meta.idFields.get(0);
+        }
+    }
+
+    /**
+     * @param jdbc         JdbcTemplate
+     * @param entityMapper EntityMapper (для getFields)
+     * @param entityType   корневой класс-сущность
+     */
+    public GraphInsertExecutor(JdbcTemplate jdbc,
+                               EntityMapper entityMapper,
+                               Class<?> entityType) {
+        this.jdbc = jdbc;
+        this.entityMapper = entityMapper;
+        plan(entityType);
+    }
+
+    private synchronized InsertPlan plan(Class<?> type) {
+        return plans.computeIfAbsent(type, t -> new InsertPlan(entityMapper, t));
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        Object root = args[0];
+        boolean cascade = args.length > 1 && Boolean.TRUE.equals(args[1]);
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            try {
+                persistGraph(con, root, cascade);
+            } catch (IllegalAccessException ex) {
+                throw new RepositoryException("Failed to read entity graph: " + ex.getMessage());
+            }
+            return null;
+        });
+        return root;
+    }
+
+    private void persistGraph(Connection con, Object root, boolean cascade)
+            throws SQLException, IllegalAccessException {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        // достигнуты только через @ManyToMany: с заданным id это существующие строки
+        Set<Object> linkedOnly = Collections.newSetFromMap(new IdentityHashMap<>());
+        // joinTable INSERT → пары (владелец, target); id разрешаются после вставки всех уровней
+        Map<String, List<Object[]>> links = new LinkedHashMap<>();
+
+        Map<Class<?>, List<Object>> level = new LinkedHashMap<>();
+        level.computeIfAbsent(root.getClass(), k -> new ArrayList<>()).add(root);
+        visited.add(root);
+
+        while (!level.isEmpty()) {
+            for (var e : level.entrySet()) {
+                insertBatch(con, plan(e.getKey()), e.getValue(), linkedOnly);
+            }
+            if (!cascade) break;
+
+            Map<Class<?>, List<Object>> next = new LinkedHashMap<>();
+            for (var e : level.entrySet()) {
+                InsertPlan owner = plan(e.getKey());
+                for (RelationshipMetadata rel : owner.meta.relations) {
+                    switch (rel.type) {
+                        case ONE_TO_MANY, ONE_TO_ONE -> {
+                            if (rel.mappedBy == null || rel.mappedBy.isEmpty()) continue;
+                            Field back = backReference(rel);
+                            for (Object parent : e.getValue()) {
+                                for (Object child : children(rel, parent)) {
+                                    setBackReference(back, child, parent, owner);
+                                    if (visited.add(child)) {
+                                        next.computeIfAbsent(child.getClass(), k -> new ArrayList<>()).add(child);
+                                    }
+                                }
+                            }
+                        }
+                        case MANY_TO_MANY -> {
+                            InsertPlan target = plan(rel.targetType);
+                            String sql = String.format("INSERT INTO %s (%s, %s) VALUES (?, ?)",
+                                    rel.joinTable,
+                                    rel.ownerJoinColumn(owner.meta.idColumns.get(0)),
+                                    rel.targetJoinColumn(target.meta.idColumns.get(0)));
+                            for (Object parent : e.getValue()) {
+                                for (Object t : children(rel, parent)) {
+                                    links.computeIfAbsent(sql, k -> new ArrayList<>()).add(new Object[]{parent, t});
+                                    if (visited.add(t)) {
+                                        linkedOnly.add(t);
+                                        next.computeIfAbsent(t.getClass(), k -> new ArrayList<>()).add(t);
+                                    }
+                                }
+                                // коллекция записана в joinTable — следующий update() синхронизирует её изменения
+                                LoadedRelations.markLoaded(parent, rel.field);
+                            }
+                        }
+                        default -> { }
+                    }
+                }
+            }
+            level = next;
+        }
+
+        for (var e : links.entrySet()) {
+            insertLinks(con, e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Вставляет сущности уровня: без id — одним батчем с проставлением сгенерированных ключей,
+     * с заданным id — батчем с колонкой @Id (кроме существующих целей @ManyToMany).
+     */
+    private void insertBatch(Connection con, InsertPlan plan, List<Object> entities, Set<Object> linkedOnly)
+            throws SQLException, IllegalAccessException {
+        Field idField = plan.idField();
+        List<Object> fresh = new ArrayList<>();
+        List<Object> assigned = new ArrayList<>();
+        for (Object entity : entities) {
+            if (ColumnLayout.isUnsetId(idField, idField.get(entity))) fresh.add(entity);
+            else if (!linkedOnly.contains(entity)) assigned.add(entity);
+        }
+        if (!assigned.isEmpty()) insertAssigned(con, plan, assigned);
+        if (fresh.isEmpty()) return;
+
+        log.debug("Executing INSERT batch [{}] of {} rows: {}",
+                idField.getDeclaringClass().getSimpleName(), fresh.size(), plan.sql);
+        try (PreparedStatement ps = con.prepareStatement(plan.sql, new String[]{plan.meta.idColumns.get(0)})) {
+            for (Object entity : fresh) {
+                plan.layout.initVersion(entity);
+                List<Object> values = plan.layout.insertValues(entity);
+                for (int i = 0; i < values.size(); i++) {
+                    StatementCreatorUtils.setParameterValue(ps, i + 1, plan.sqlTypes[i], values.get(i));
+                }
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                for (Object entity : fresh) {
+                    if (!keys.next()) {
+                        throw new RepositoryException("No generated key returned for "
+                                + idField.getDeclaringClass().getSimpleName());
+                    }
+                    // у record'а поля не меняются: ключ остаётся только в БД
+                    if (!entity.getClass().isRecord()) {
+                        idField.set(entity, convertKey(keys.getObject(1), idField.getType()));
+                    }
+                    plan.layout.markLazyClean(entity);
+                }
+            }
+        }
+    }
+
+    /** сущности с заданным приложением id: ключи не запрашиваются */
+    private void insertAssigned(Connection con, InsertPlan plan, List<Object> entities)
+            throws SQLException, IllegalAccessException {
+        Field idField = plan.idField();
+        log.debug("Executing INSERT batch [{}] of {} rows with assigned ids: {}",
+                idField.getDeclaringClass().getSimpleName(), entities.size(), plan.assignedSql);
+        try (PreparedStatement ps = con.prepareStatement(plan.assignedSql)) {
+            for (Object entity : entities) {
+                plan.layout.initVersion(entity);
+                List<Object> values = plan.layout.insertValues(entity);
+                values.add(0, idField.get(entity));
+                for (int i = 0; i < values.size(); i++) {
+                    StatementCreatorUtils.setParameterValue(ps, i + 1, plan.assignedTypes[i], values.get(i));
+                }
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            for (Object entity : entities) plan.layout.markLazyClean(entity);
+        }
+    }
+
+    private void insertLinks(Connection con, String sql, List<Object[]> pairs)
+            throws SQLException, IllegalAccessException {
+        log.debug("Executing join-table INSERT batch of {} rows: {}", pairs.size(), sql);
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            for (Object[] pair : pairs) {
+                StatementCreatorUtils.setParameterValue(ps, 1, Types.OTHER, plan(pair[0].getClass()).idField().get(pair[0]));
+                StatementCreatorUtils.setParameterValue(ps, 2, Types.OTHER, plan(pair[1].getClass()).idField().get(pair[1]));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private Collection<?> children(RelationshipMetadata rel, Object parent) throws IllegalAccessException {
+        Object value = rel.field.get(parent);
+        if (value == null) return Collections.emptyList();
+        return value instanceof Collection<?> c ? c : Collections.singletonList(value);
+    }
+
+    private Field backReference(RelationshipMetadata rel) {
+        try {
+            Field f = rel.targetType.getDeclaredField(rel.mappedBy);
+            f.setAccessible(true);
+            return f;
+        } catch (NoSuchFieldException ex) {
+            throw new RepositoryException("No mappedBy field '" + rel.mappedBy + "' in " + rel.targetType.getName());
+        }
+    }
+
+    /** поле mappedBy — либо ссылка на родителя (@ManyToOne), либо простая колонка с его id */
+    private void setBackReference(Field back, Object child, Object parent, InsertPlan owner)
+            throws IllegalAccessException {
+        if (back.getType().isInstance(parent)) {
+            back.set(child, parent);
+        } else {
+            back.set(child, convertKey(owner.idField().get(parent), back.getType()));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object convertKey(Object key, Class<?> type) {
+        Class<?> boxed = org.springframework.util.ClassUtils.resolvePrimitiveIfNecessary(type);
+        if (key instanceof Number n && Number.class.isAssignableFrom(boxed) && !boxed.isInstance(key)) {
+            return NumberUtils.convertNumberToTargetClass(n, (Class<? extends Number>) boxed);
+        }
+        return key;
+    }
+}
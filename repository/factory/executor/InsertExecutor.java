@@ -1,23 +1,31 @@
 package com.db.kurs.orm.repository.factory.executor;
 
 import com.db.kurs.exception.RepositoryException;
-import com.db.kurs.orm.annotation.link.JoinColumn;
 import com.db.kurs.orm.mapper.EntityMapper;
 import com.db.kurs.orm.mapper.QueryExecutor;
 import lombok.extern.slf4j.Slf4j;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.NumberUtils;
 
 import java.lang.reflect.Field;
-import java.sql.Types;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.*;
 
 @Slf4j
 public class InsertExecutor implements QueryExecutor {
     private final JdbcTemplate jdbc;
     private final PreparedStatementCreatorFactory pscFactory;
-    private final List<Field> insertFields;     // простые @Column
-    private final List<Field> relationFields;   // @ManyToOne, owner @OneToOne
+    private final ColumnLayout layout;
+    private final String sql;
+    private final int[] sqlTypes;
+    private final EntityMetadata meta;
+    private final boolean assignedId;   // id задаёт приложение и пишется в INSERT
 
     /**
      * @param jdbc         JdbcTemplate
@@ -29,89 +37,134 @@ public class InsertExecutor implements QueryExecutor {
                           EntityMapper entityMapper,
                           String tableName,
                           Class<?> entityType) {
-        this.jdbc = jdbc;
-
-        // простые поля @Column (без @Id и без связей)
-        Map<String, Field> simple = entityMapper.getFields(entityType);
-        this.insertFields = new ArrayList<>(simple.values());
+        this(jdbc, entityMapper, tableName, entityType, false);
+    }
 
-        // поля-связи @ManyToOne и owner @OneToOne
-        this.relationFields = new ArrayList<>();
-        for (Field f : entityType.getDeclaredFields()) {
-            if (f.isAnnotationPresent(com.db.kurs.orm.annotation.link.ManyToOne.class) ||
-                    (f.isAnnotationPresent(com.db.kurs.orm.annotation.link.OneToOne.class) &&
-                            f.getAnnotation(com.db.kurs.orm.annotation.link.OneToOne.class).mappedBy().isEmpty())) {
-                f.setAccessible(true);
-                relationFields.add(f);
-            }
+    /**
+     * @param assignedId true — @Id задаётся приложением и пишется в INSERT (null / 0 у примитива — ошибка),
+     *                   false — генерируется БД
+     */
+    public InsertExecutor(JdbcTemplate jdbc,
+                          EntityMapper entityMapper,
+                          String tableName,
+                          Class<?> entityType,
+                          boolean assignedId) {
+        this.jdbc = jdbc;
+        this.meta = new EntityMetadata(entityType);
+        this.assignedId = assignedId;
+        if (assignedId && meta.idFields.size() != 1) {
+            throw new RepositoryException("Assigned id requires a single @Id: " + entityType.getName());
         }
 
-        List<String> columnNames = new ArrayList<>();
-        List<Integer> sqlTypes    = new ArrayList<>();
+        // простые поля @Column и FK связей @ManyToOne / owner @OneToOne
+        this.layout = new ColumnLayout(entityMapper, entityType);
 
-        // простые
-        for (var e : simple.entrySet()) {
-            columnNames.add(e.getKey());
-            sqlTypes.add(mapJavaTypeToSqlType(e.getValue().getType()));
-        }
-        // связи: берем имя @JoinColumn
-        for (Field rf : relationFields) {
-            var jc = rf.getAnnotation(JoinColumn.class);
-            if (jc == null) throw new RepositoryException("Relation missing @JoinColumn on " + rf.getName());
-            columnNames.add(jc.name());
-            sqlTypes.add(Types.OTHER);
-        }
+        // [id,] колонки, затем ленивые колонки — они пишутся вместе с остальными
+        List<String> columnNames = new ArrayList<>();
+        if (assignedId) columnNames.add(meta.idColumns.get(0));
+        columnNames.addAll(layout.columnNames);
+        columnNames.addAll(layout.lazyColumnNames);
+        this.sqlTypes = new int[columnNames.size()];
+        int offset = assignedId ? 1 : 0;
+        if (assignedId) sqlTypes[0] = ColumnLayout.mapJavaTypeToSqlType(meta.idFields.get(0).getType());
+        System.arraycopy(layout.sqlTypes, 0, sqlTypes, offset, layout.sqlTypes.length);
+        System.arraycopy(layout.lazySqlTypes, 0, sqlTypes, offset + layout.sqlTypes.length, layout.lazySqlTypes.length);
 
         String cols = String.join(", ", columnNames);
         String vals = String.join(", ", Collections.nCopies(columnNames.size(), "?"));
-        String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, cols, vals);
+        this.sql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, cols, vals);
         log.debug("Prepared INSERT SQL: {}", sql);
 
-        this.pscFactory = new PreparedStatementCreatorFactory(
-                sql,
-                sqlTypes.stream().mapToInt(i->i).toArray()
-        );
+        this.pscFactory = new PreparedStatementCreatorFactory(sql, sqlTypes);
     }
 
     @Override
     public Object execute(Object[] args) {
         Object entity = args[0];
         try {
-            List<Object> params = new ArrayList<>();
-            // простые
-            for (Field fld : insertFields) {
-                params.add(fld.get(entity));
-            }
-            // связи: stub.getId()
-            for (Field rf : relationFields) {
-                Object related = rf.get(entity);
-                if (related == null) {
-                    params.add(null);
-                } else {
-                    Field pk = new EntityMapper().getFieldWithIdAnnotation(related.getClass());
-                    pk.setAccessible(true);
-                    params.add(pk.get(related));
-                }
-            }
+            layout.initVersion(entity);
+            List<Object> params = params(entity);
 
             log.debug("Executing INSERT with params: {}", params);
             jdbc.update(pscFactory.newPreparedStatementCreator(params));
+            layout.markLazyClean(entity);
             return entity;
+        } catch (RepositoryException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new RepositoryException("Failed to execute INSERT");
         }
     }
 
-    private int mapJavaTypeToSqlType(Class<?> cls) {
-        if (cls == String.class)          return Types.VARCHAR;
-        if (cls == Integer.class|| cls==int.class)    return Types.INTEGER;
-        if (cls == Long.class   || cls==long.class)   return Types.BIGINT;
-        if (cls == Boolean.class|| cls==boolean.class)return Types.BOOLEAN;
-        if (cls == Double.class || cls==double.class)  return Types.DOUBLE;
-        if (cls == Float.class  || cls==float.class)   return Types.FLOAT;
-        if (cls == java.util.Date.class
-                || cls == java.sql.Timestamp.class)            return Types.TIMESTAMP;
-        if (cls == byte[].class)           return Types.BLOB;
-        return Types.OTHER;
+    /** значения параметров INSERT в порядке колонок sql */
+    private List<Object> params(Object entity) throws IllegalAccessException {
+        List<Object> params = new ArrayList<>();
+        if (assignedId) {
+            Object id = meta.idFields.get(0).get(entity);
+            if (ColumnLayout.isUnsetId(meta.idFields.get(0), id)) {
+                throw new RepositoryException("@Id of " + meta.tableName + " must be assigned before INSERT");
+            }
+            params.add(id);
+        }
+        params.addAll(layout.values(entity));
+        params.addAll(layout.lazyValues(entity));
+        return params;
+    }
+
+    /**
+     * Вставляет сущности одним JDBC-батчем на одном соединении и проставляет
+     * сгенерированные ключи в поле @Id (нужно, чтобы FK следующих батчей ссылались на них).
+     * С assignedId ключи не запрашиваются: id уже в сущностях.
+     */
+    public void executeBatch(List<?> entities) {
+        if (entities.isEmpty()) return;
+        if (meta.idFields.isEmpty()) {
+            throw new RepositoryException("No @Id field in " + meta.tableName);
+        }
+        Field idField = meta.idFields.get(0);
+        log.debug("Executing INSERT batch of {} rows: {}", entities.size(), sql);
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = assignedId
+                    ? con.prepareStatement(sql)
+                    : con.prepareStatement(sql, new String[]{meta.idColumns.get(0)})) {
+                for (Object entity : entities) {
+                    layout.initVersion(entity);
+                    List<Object> values = params(entity);
+                    for (int i = 0; i < values.size(); i++) {
+                        StatementCreatorUtils.setParameterValue(ps, i + 1, sqlTypes[i], values.get(i));
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                if (assignedId) {
+                    for (Object entity : entities) layout.markLazyClean(entity);
+                    return null;
+                }
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Object entity : entities) {
+                        if (!keys.next()) {
+                            throw new RepositoryException("No generated key returned for " + meta.tableName);
+                        }
+                        // у record'а поля не меняются: ключ остаётся только в БД
+                        if (!entity.getClass().isRecord()) {
+                            idField.set(entity, convertKey(keys.getObject(1), idField.getType()));
+                        }
+                        layout.markLazyClean(entity);
+                    }
+                }
+            } catch (IllegalAccessException ex) {
+                throw new RepositoryException("Failed to execute INSERT batch: " + ex.getMessage());
+            }
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object convertKey(Object key, Class<?> type) {
+        Class<?> boxed = ClassUtils.resolvePrimitiveIfNecessary(type);
+        if (key instanceof Number n && Number.class.isAssignableFrom(boxed) && !boxed.isInstance(key)) {
+            return NumberUtils.convertNumberToTargetClass(n, (Class<? extends Number>) boxed);
+        }
+        return key;
     }
 }
@@ -0,0 +1,247 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.repository.LazyValue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Ленивые колонки одного типа сущности: после маппинга результата в каждое поле
+ * @Column(fetch = LAZY) ставится LazyValue, привязанный к группе «соседей» — сущностей того же
+ * результата. Первый get() у любой из них загружает колонку всей группы запросами
+ * SELECT id, col FROM t WHERE id IN (...) порциями по IN_CHUNK.
+ * Потоковое чтение — отдельный SELECT col по id на своём (или транзакционном) соединении.
+ */
+@Slf4j
+public class LazyColumnLoader {
+    private static final int IN_CHUNK = 500;
+
+    /** ленивая колонка: поле LazyValue, имя столбца, тип значения (byte[] / String) */
+    private record LazyColumn(Field field, String name, Class<?> valueType) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final String tableName;
+    private final String idColumn;
+    private final Field idField;
+    private final List<LazyColumn> columns = new ArrayList<>();
+
+    public LazyColumnLoader(JdbcTemplate jdbc, Class<?> entityType) {
+        EntityMetadata meta = new EntityMetadata(entityType);
+        if (meta.idFields.size() != 1) {
+            throw new RepositoryException("Lazy columns require a single @Id: " + entityType.getName());
+        }
+        this.jdbc = jdbc;
+        this.tableName = meta.tableName;
+        this.idColumn = meta.idColumns.get(0);
+        this.idField = meta.idFields.get(0);
+        meta.lazyColumns.forEach((name, f) -> columns.add(new LazyColumn(f, name, valueType(f))));
+    }
+
+    /** тип значения LazyValue&lt;byte[]&gt; / LazyValue&lt;String&gt; */
+    static Class<?> valueType(Field f) {
+        Type t = f.getGenericType();
+        if (f.getType() == LazyValue.class && t instanceof ParameterizedType pt
+                && (pt.getActualTypeArguments()[0] == byte[].class || pt.getActualTypeArguments()[0] == String.class)) {
+            return (Class<?>) pt.getActualTypeArguments()[0];
+        }
+        throw new RepositoryException("Lazy column " + f.getDeclaringClass().getSimpleName() + "." + f.getName()
+                + " must be LazyValue<byte[]> or LazyValue<String>");
+    }
+
+    /** есть ли у типа ленивые колонки */
+    public static boolean hasLazyColumns(Class<?> entityType) {
+        return !new EntityMetadata(entityType).lazyColumns.isEmpty();
+    }
+
+    /** ставит незагруженные LazyValue всем сущностям списка; они грузятся вместе */
+    public void attach(List<?> entities) throws IllegalAccessException {
+        if (entities.isEmpty()) return;
+        for (LazyColumn column : columns) {
+            Siblings group = new Siblings(column);
+            for (Object entity : entities) {
+                Object id = idField.get(entity);
+                if (id == null) continue;
+                group.pending.add(id);
+                column.field.set(entity, LazyValue.deferred(new RowSource<>(group, id)));
+            }
+        }
+    }
+
+    /** сущности одного результата: значения колонки загружаются для всех сразу */
+    private final class Siblings {
+        final LazyColumn column;
+        final Set<Object> pending = new LinkedHashSet<>();
+        final Map<Object, Object> values = new HashMap<>();
+
+        Siblings(LazyColumn column) {
+            this.column = column;
+        }
+
+        synchronized Object take(Object id) {
+            if (pending.contains(id)) load();
+            return values.remove(id);
+        }
+
+        private void load() {
+            List<Object> ids = new ArrayList<>(pending);
+            pending.clear();
+            for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+                List<Object> chunk = ids.subList(from, Math.min(ids.size(), from + IN_CHUNK));
+                String sql = String.format("SELECT %s, %s FROM %s WHERE %s IN (%s)",
+                        idColumn, column.name, tableName, idColumn,
+                        String.join(",", Collections.nCopies(chunk.size(), "?")));
+                log.debug("Loading lazy column {}.{} for {} rows: {}", tableName, column.name, chunk.size(), sql);
+                jdbc.query(sql, rs -> {
+                    Object value = column.valueType == byte[].class ? rs.getBytes(2) : rs.getString(2);
+                    values.put(key(rs.getObject(1)), value);
+                }, chunk.toArray());
+            }
+        }
+
+        /** id из ResultSet к типу поля @Id (драйвер может вернуть Integer вместо Long) */
+        private Object key(Object raw) {
+            if (raw instanceof Number n) {
+                Class<?> t = idField.getType();
+                if (t == Long.class || t == long.class) return n.longValue();
+                if (t == Integer.class || t == int.class) return n.intValue();
+            }
+            return raw;
+        }
+    }
+
+    /** источник значения одной строки */
+    private final class RowSource<T> implements LazyValue.Source<T> {
+        private final Siblings group;
+        private final Object id;
+
+        RowSource(Siblings group, Object id) {
+            this.group = group;
+            this.id = id;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T load() {
+            return (T) group.take(id);
+        }
+
+        @Override
+        public InputStream openStream() {
+            if (group.column.valueType != byte[].class) {
+                throw new IllegalStateException("Column " + group.column.name + " is not binary");
+            }
+            Cursor cursor = open(group.column.name, id);
+            try {
+                InputStream in = cursor.rs == null ? null : cursor.rs.getBinaryStream(1);
+                if (in == null) {
+                    cursor.close();
+                    return InputStream.nullInputStream();
+                }
+                return new FilterInputStream(in) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            cursor.close();
+                        }
+                    }
+                };
+            } catch (SQLException ex) {
+                cursor.close();
+                throw new RepositoryException("Failed to stream " + tableName + "." + group.column.name + ": " + ex.getMessage());
+            }
+        }
+
+        @Override
+        public Reader openReader() {
+            if (group.column.valueType != String.class) {
+                throw new IllegalStateException("Column " + group.column.name + " is not character data");
+            }
+            Cursor cursor = open(group.column.name, id);
+            try {
+                Reader in = cursor.rs == null ? null : cursor.rs.getCharacterStream(1);
+                if (in == null) {
+                    cursor.close();
+                    return Reader.nullReader();
+                }
+                return new FilterReader(in) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            cursor.close();
+                        }
+                    }
+                };
+            } catch (SQLException ex) {
+                cursor.close();
+                throw new RepositoryException("Failed to stream " + tableName + "." + group.column.name + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /** открытый курсор на значение одной строки; rs == null — строки нет */
+    private final class Cursor {
+        final DataSource ds;
+        final Connection con;
+        PreparedStatement ps;
+        ResultSet rs;
+
+        Cursor(DataSource ds, Connection con) {
+            this.ds = ds;
+            this.con = con;
+        }
+
+        void close() {
+            try {
+                if (rs != null) rs.close();
+                if (ps != null) ps.close();
+            } catch (SQLException ex) {
+                log.debug("Failed to close lazy column cursor: {}", ex.toString());
+            } finally {
+                DataSourceUtils.releaseConnection(con, ds);
+            }
+        }
+    }
+
+    private Cursor open(String column, Object id) {
+        DataSource ds = jdbc.getDataSource();
+        Cursor cursor = new Cursor(ds, DataSourceUtils.getConnection(ds));
+        String sql = String.format("SELECT %s FROM %s WHERE %s = ?", column, tableName, idColumn);
+        try {
+            log.debug("Streaming lazy column: {} | id: {}", sql, id);
+            cursor.ps = cursor.con.prepareStatement(sql);
+            cursor.ps.setObject(1, id);
+            ResultSet rs = cursor.ps.executeQuery();
+            if (rs.next()) {
+                cursor.rs = rs;
+            } else {
+                rs.close();
+            }
+            return cursor;
+        } catch (SQLException ex) {
+            cursor.close();
+            throw new RepositoryException("Failed to stream " + tableName + "." + column + ": " + ex.getMessage());
+        }
+    }
+}
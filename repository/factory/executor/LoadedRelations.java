@@ -0,0 +1,71 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Какие коллекции @ManyToMany прочитанных сущностей действительно загружены из БД (или записаны каскадом).
+ * update() не синхронизирует joinTable по коллекции сущности, прочитанной без этой связи:
+ * там инициализатор вроде new ArrayList&lt;&gt;(), и по нему все ссылки были бы удалены.
+ * Коллекции сущностей, которых здесь нет (созданные в коде, десериализованные копии),
+ * синхронизируются как есть. Сущности учитываются по идентичности и не удерживаются
+ * от сборки мусора; общей блокировки нет — чтение связей идёт параллельно.
+ */
+public final class LoadedRelations {
+    private static final Map<EntityRef, Set<Field>> READ = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+    private LoadedRelations() {
+    }
+
+    /** сущность прочитана из БД; её связи @ManyToMany не загружены, пока не отмечены markLoaded */
+    public static void markRead(Object entity) {
+        expunge();
+        READ.putIfAbsent(new EntityRef(entity, QUEUE), ConcurrentHashMap.newKeySet());
+    }
+
+    /** коллекция field сущности соответствует joinTable */
+    public static void markLoaded(Object entity, Field field) {
+        expunge();
+        READ.computeIfAbsent(new EntityRef(entity, QUEUE), k -> ConcurrentHashMap.newKeySet()).add(field);
+    }
+
+    /** сущность прочитана из БД без связи field: её коллекция не описывает joinTable */
+    public static boolean isUnloaded(Object entity, Field field) {
+        Set<Field> loaded = READ.get(new EntityRef(entity, null));
+        return loaded != null && !loaded.contains(field);
+    }
+
+    private static void expunge() {
+        for (Object ref; (ref = QUEUE.poll()) != null; ) {
+            READ.remove(ref);
+        }
+    }
+
+    /** слабая ссылка с равенством по идентичности сущности */
+    private static final class EntityRef extends WeakReference<Object> {
+        private final int hash;
+
+        EntityRef(Object entity, ReferenceQueue<Object> queue) {
+            super(entity, queue);
+            this.hash = System.identityHashCode(entity);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof EntityRef other)) return false;
+            Object entity = get();
+            return entity != null && entity == other.get();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.metadata.RelationshipMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Синхронизация joinTable одной связи @ManyToMany по разнице множеств:
+ * текущие ссылки читаются id-only запросом, добавленные вставляются батчем,
+ * удалённые стираются запросами DELETE ... IN (...) порциями по batchSize. Объём записи пропорционален изменению.
+ * Коллекция сущности, прочитанной без этой связи, не синхронизируется (LoadedRelations):
+ * это обычно пустой инициализатор поля, а не желаемое состояние. Загруженные коллекции
+ * и коллекции сущностей, собранных в коде или десериализованных, сравниваются со свежим
+ * списком ссылок из joinTable.
+ */
+@Slf4j
+public class ManyToManySync {
+    private final JdbcTemplate jdbc;
+    private final RelationshipMetadata rel;
+    private final Field targetIdField;
+    private final Class<?> targetIdType;
+    private final String selectSql;   // SELECT target FROM jt WHERE owner = ?
+    private final String insertSql;   // INSERT INTO jt (owner, target) VALUES (?, ?)
+    private final String deleteSql;   // DELETE FROM jt WHERE owner = ? AND target IN (%s)
+    private final int batchSize;
+
+    /** @param batchSize максимальное число id в одном DELETE ... IN (...) */
+    public ManyToManySync(JdbcTemplate jdbc, EntityMetadata ownerMeta, RelationshipMetadata rel, int batchSize) {
+        this.jdbc = jdbc;
+        this.rel = rel;
+        this.batchSize = batchSize;
+        EntityMetadata tm = new EntityMetadata(rel.targetType);
+        if (tm.idFields.isEmpty()) {
+            throw new RepositoryException("No @Id field in " + rel.targetType.getName());
+        }
+        this.targetIdField = tm.idFields.get(0);
+        this.targetIdType = ClassUtils.resolvePrimitiveIfNecessary(targetIdField.getType());
+
+        String ownerCol  = rel.ownerJoinColumn(ownerMeta.idColumns.get(0));
+        String targetCol = rel.targetJoinColumn(tm.idColumns.get(0));
+        this.selectSql = String.format("SELECT %s FROM %s WHERE %s = ?", targetCol, rel.joinTable, ownerCol);
+        this.insertSql = String.format("INSERT INTO %s (%s, %s) VALUES (?, ?)", rel.joinTable, ownerCol, targetCol);
+        this.deleteSql = "DELETE FROM " + rel.joinTable + " WHERE " + ownerCol + " = ? AND " + targetCol + " IN (%s)";
+    }
+
+    /**
+     * Приводит joinTable к коллекции из поля связи. Если сущность прочитана без этой связи
+     * или коллекция null — ничего не делает.
+     */
+    public void sync(Object owner, Object ownerId) throws IllegalAccessException {
+        Collection<?> targets = (Collection<?>) rel.field.get(owner);
+        if (targets == null || LoadedRelations.isUnloaded(owner, rel.field)) {
+            log.debug("Sync MANY_TO_MANY [{}] skipped: {} not loaded", rel.joinTable, rel.field.getName());
+            return;
+        }
+
+        Set<Object> wanted = new LinkedHashSet<>();
+        for (Object t : targets) {
+            Object tid = t == null ? null : targetIdField.get(t);
+            if (tid == null) {
+                throw new RepositoryException("@ManyToMany " + rel.field.getName() + " contains unsaved entity");
+            }
+            wanted.add(tid);
+        }
+        Set<Object> current = new HashSet<>(jdbc.queryForList(selectSql, targetIdType, ownerId));
+
+        List<Object[]> added = new ArrayList<>();
+        for (Object tid : wanted) {
+            if (!current.contains(tid)) added.add(new Object[]{ownerId, tid});
+        }
+        List<Object> removed = new ArrayList<>();
+        for (Object tid : current) {
+            if (!wanted.contains(tid)) removed.add(tid);
+        }
+
+        for (int from = 0; from < removed.size(); from += batchSize) {
+            List<Object> chunk = removed.subList(from, Math.min(from + batchSize, removed.size()));
+            String sql = String.format(deleteSql, String.join(",", Collections.nCopies(chunk.size(), "?")));
+            log.debug("Sync MANY_TO_MANY [{}] remove {} links: {}", rel.joinTable, chunk.size(), sql);
+            List<Object> params = new ArrayList<>(chunk.size() + 1);
+            params.add(ownerId);
+            params.addAll(chunk);
+            jdbc.update(sql, params.toArray());
+        }
+        if (!added.isEmpty()) {
+            log.debug("Sync MANY_TO_MANY [{}] add {} links: {}", rel.joinTable, added.size(), insertSql);
+            jdbc.batchUpdate(insertSql, added);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SQL из @Query с именованными (:name) и нумерованными (?1) параметрами, приведённый к JDBC-виду
+ * с плейсхолдерами ?, и порядок, в котором аргументы метода подставляются в них.
+ */
+public class ParsedSql {
+    private static final Pattern NAMED = Pattern.compile(":(\\w+)");
+    private static final Pattern POSITIONAL = Pattern.compile("\\?(\\d+)");
+
+    /** SQL с плейсхолдерами ? */
+    public final String sql;
+    /** индексы аргументов метода по плейсхолдерам; null — аргументы подставляются как есть */
+    public final int[] paramOrder;
+
+    public ParsedSql(String sql, String[] paramNames) {
+        List<Integer> order = new ArrayList<>();
+        Matcher mn = NAMED.matcher(sql);
+        StringBuffer sb1 = new StringBuffer();
+        while (mn.find()) {
+            String name = mn.group(1);
+            int idx = Arrays.asList(paramNames).indexOf(name);
+            if (idx < 0) {
+                throw new IllegalArgumentException("Unknown parameter name in query: " + name);
+            }
+            order.add(idx);
+            mn.appendReplacement(sb1, "?");
+        }
+        mn.appendTail(sb1);
+        String afterNamed = sb1.toString();
+
+        // обрабатываем ?1,?2… позиционные
+        Matcher mp = POSITIONAL.matcher(afterNamed);
+        StringBuffer sb2 = new StringBuffer();
+        while (mp.find()) {
+            int pos = Integer.parseInt(mp.group(1)) - 1;
+            order.add(pos);
+            mp.appendReplacement(sb2, "?");
+        }
+        mp.appendTail(sb2);
+        this.sql = sb2.toString();
+
+        this.paramOrder = order.isEmpty()
+                ? null
+                : order.stream().mapToInt(i -> i).toArray();
+    }
+
+    /** переставляет args в соответствии с paramOrder, если нужно */
+    public Object[] bind(Object[] args) {
+        if (paramOrder == null) return args;
+        Object[] finalArgs = new Object[paramOrder.length];
+        for (int i = 0; i < paramOrder.length; i++) {
+            finalArgs[i] = args[paramOrder[i]];
+        }
+        return finalArgs;
+    }
+}
@@ -0,0 +1,115 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.mapper.QueryExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * @Query с примитивным результатом: long[], int[], double[], LongStream, IntStream, DoubleStream.
+ * Первая колонка читается типизированным геттером (getLong / getInt / getDouble) в растущий
+ * примитивный буфер, без упаковки каждого значения. Stream строится поверх готового массива.
+ * NULL в колонке — ошибка: у примитивов нет для него значения.
+ */
+@Slf4j
+public class PrimitiveQueryExecutor implements QueryExecutor {
+    private static final Set<Class<?>> TYPES = Set.of(
+            long[].class, int[].class, double[].class,
+            LongStream.class, IntStream.class, DoubleStream.class);
+
+    private final JdbcTemplate jdbc;
+    private final ParsedSql parsed;
+    private final Class<?> returnType;
+
+    public PrimitiveQueryExecutor(JdbcTemplate jdbc,
+                                  String sql,
+                                  String[] paramNames,
+                                  Class<?> returnType) {
+        if (!supports(returnType)) {
+            throw new RepositoryException("Unsupported primitive result type: " + returnType.getName());
+        }
+        this.jdbc = jdbc;
+        this.parsed = new ParsedSql(sql, paramNames);
+        this.returnType = returnType;
+    }
+
+    public static boolean supports(Class<?> returnType) {
+        return TYPES.contains(returnType);
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        Object[] finalArgs = parsed.bind(args);
+        log.debug("Executing primitive query: {} | params: {}", parsed.sql, Arrays.toString(finalArgs));
+        if (returnType == long[].class || returnType == LongStream.class) {
+            long[] values = jdbc.query(parsed.sql, (ResultSetExtractor<long[]>) this::readLongs, finalArgs);
+            return returnType == LongStream.class ? LongStream.of(values) : values;
+        }
+        if (returnType == int[].class || returnType == IntStream.class) {
+            int[] values = jdbc.query(parsed.sql, (ResultSetExtractor<int[]>) this::readInts, finalArgs);
+            return returnType == IntStream.class ? IntStream.of(values) : values;
+        }
+        double[] values = jdbc.query(parsed.sql, (ResultSetExtractor<double[]>) this::readDoubles, finalArgs);
+        return returnType == DoubleStream.class ? DoubleStream.of(values) : values;
+    }
+
+    private long[] readLongs(ResultSet rs) throws SQLException {
+        long[] buf = new long[initialCapacity(rs)];
+        int n = 0;
+        while (rs.next()) {
+            long v = rs.getLong(1);
+            checkNotNull(rs, n);
+            if (n == buf.length) buf = Arrays.copyOf(buf, grow(n));
+            buf[n++] = v;
+        }
+        return n == buf.length ? buf : Arrays.copyOf(buf, n);
+    }
+
+    private int[] readInts(ResultSet rs) throws SQLException {
+        int[] buf = new int[initialCapacity(rs)];
+        int n = 0;
+        while (rs.next()) {
+            int v = rs.getInt(1);
+            checkNotNull(rs, n);
+            if (n == buf.length) buf = Arrays.copyOf(buf, grow(n));
+            buf[n++] = v;
+        }
+        return n == buf.length ? buf : Arrays.copyOf(buf, n);
+    }
+
+    private double[] readDoubles(ResultSet rs) throws SQLException {
+        double[] buf = new double[initialCapacity(rs)];
+        int n = 0;
+        while (rs.next()) {
+            double v = rs.getDouble(1);
+            checkNotNull(rs, n);
+            if (n == buf.length) buf = Arrays.copyOf(buf, grow(n));
+            buf[n++] = v;
+        }
+        return n == buf.length ? buf : Arrays.copyOf(buf, n);
+    }
+
+    /** fetch size драйвера — разумная оценка первой порции */
+    private static int initialCapacity(ResultSet rs) throws SQLException {
+        return Math.max(16, Math.min(rs.getFetchSize(), 1 << 16));
+    }
+
+    private static int grow(int size) {
+        return size + (size >> 1) + 1;
+    }
+
+    private void checkNotNull(ResultSet rs, int row) throws SQLException {
+        if (rs.wasNull()) {
+            throw new RepositoryException("NULL in primitive result at row " + row + ": " + parsed.sql);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.metadata.RelationshipMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.ClassUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * countRelation: размеры коллекций @OneToMany / @ManyToMany (и inverse @OneToOne) для пачки родителей
+ * одним SELECT fk, COUNT(*) ... GROUP BY fk по таблице детей или joinTable, без загрузки самих детей.
+ */
+@Slf4j
+public class RelationCountExecutor implements QueryExecutor {
+    private final JdbcTemplate jdbc;
+    private final EntityMetadata meta;
+    private final Class<?> idType;
+    private final int batchSize;
+    /** имя поля связи → SELECT fk, COUNT(*) FROM ... WHERE fk IN (%s) GROUP BY fk */
+    private final Map<String, String> countSql = new ConcurrentHashMap<>();
+
+    /**
+     * @param jdbc       JdbcTemplate
+     * @param entityType класс-сущность владельца связей
+     * @param batchSize  максимальное число id в одном IN (...)
+     */
+    public RelationCountExecutor(JdbcTemplate jdbc, Class<?> entityType, int batchSize) {
+        this.jdbc = jdbc;
+        this.meta = new EntityMetadata(entityType);
+        if (meta.idFields.isEmpty()) {
+            throw new RepositoryException("No @Id field in " + entityType.getName());
+        }
+        this.idType = ClassUtils.resolvePrimitiveIfNecessary(meta.idFields.get(0).getType());
+        this.batchSize = batchSize;
+    }
+
+    private String compile(String relation) {
+        RelationshipMetadata rel = meta.relations.stream()
+                .filter(r -> r.field.getName().equals(relation))
+                .findFirst()
+                .orElseThrow(() -> new RepositoryException("Unknown relation '" + relation + "'"));
+        String table, fk;
+        if (rel.type == RelationshipMetadata.RelationType.MANY_TO_MANY) {
+            table = rel.joinTable;
+            fk = rel.ownerJoinColumn(meta.idColumns.get(0));
+        } else if (rel.mappedBy != null && !rel.mappedBy.isEmpty()) {
+            table = new EntityMetadata(rel.targetType).tableName;
+            fk = rel.mappedByColumn();
+        } else {
+            throw new RepositoryException("Relation '" + relation + "' is not a collection owned by children");
+        }
+        return "SELECT " + fk + ", COUNT(*) FROM " + table + " WHERE " + fk + " IN (%s) GROUP BY " + fk;
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        String relation = (String) args[0];
+        Collection<?> ids = (Collection<?>) args[1];
+        String tpl = countSql.computeIfAbsent(relation, this::compile);
+
+        Map<Object, Long> sizes = new LinkedHashMap<>();
+        if (ids == null || ids.isEmpty()) return sizes;
+        for (Object id : ids) sizes.put(id, 0L);
+
+        List<Object> all = new ArrayList<>(sizes.keySet());
+        for (int from = 0; from < all.size(); from += batchSize) {
+            Object[] chunk = all.subList(from, Math.min(from + batchSize, all.size())).toArray();
+            String sql = String.format(tpl, String.join(",", Collections.nCopies(chunk.length, "?")));
+            log.debug("Batch COUNT [{}] SQL: {} | {} ids", relation, sql, chunk.length);
+            jdbc.query(sql, (RowCallbackHandler) rs ->
+                    sizes.put(JdbcUtils.getResultSetValue(rs, 1, idType), rs.getLong(2)), chunk);
+        }
+        return sizes;
+    }
+}
@@ -1,21 +1,23 @@
 package com.db.kurs.orm.repository.factory.executor;
 
 import com.db.kurs.orm.annotation.link.FetchType;
-import com.db.kurs.orm.annotation.link.JoinColumn;
 import com.db.kurs.orm.mapper.EntityMapper;
 import com.db.kurs.orm.mapper.QueryExecutor;
 import com.db.kurs.orm.metadata.EntityMetadata;
 import com.db.kurs.orm.metadata.RelationshipMetadata;
+import com.db.kurs.orm.repository.Deadline;
+import com.db.kurs.orm.repository.DeadlineExceededException;
+import com.db.kurs.orm.repository.EntityGraph;
+import com.db.kurs.orm.repository.factory.InvocationContext;
+import com.db.kurs.orm.repository.factory.cache.OffHeapEntityCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
 import java.sql.ResultSet;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public class RelationQueryExecutor implements QueryExecutor {
@@ -26,6 +28,111 @@ public class RelationQueryExecutor implements QueryExecutor {
     private final Class<?> rootType;
     private final boolean isList;
     private final EntityMetadata rootMeta;
+    /** Скомпилированный план: для каждого достижимого типа — его EAGER-связи */
+    private final Map<Class<?>, List<RelationFetch>> fetchPlan;
+    /** граф загрузки из @FetchGraph метода (null — FetchType сущностей) */
+    private final EntityGraph methodGraph;
+    /** скомпилированные деревья для графов с явными путями */
+    private final Map<EntityGraph, GraphNode> compiledGraphs = new ConcurrentHashMap<>();
+    /** кэш строк для целей @ManyToOne (null — без кэша) */
+    private final OffHeapEntityCache entityCache;
+    /** загрузчики ленивых колонок по типам (пустой — у типа их нет) */
+    private final Map<Class<?>, Optional<LazyColumnLoader>> lazyLoaders = new ConcurrentHashMap<>();
+    /** у типа есть связи @ManyToMany (его прочитанные сущности учитываются в LoadedRelations) */
+    private final Map<Class<?>, Boolean> manyToManyOwners = new ConcurrentHashMap<>();
+    /** в текущем вызове связи пропущены по сроку (Deadline.Expiry.SKIP_RELATIONS) */
+    private final ThreadLocal<Boolean> skippedRelations = ThreadLocal.withInitial(() -> false);
+
+    private enum FetchKind { MANY_TO_ONE, INVERSE_ONE_TO_ONE, ONE_TO_MANY, MANY_TO_MANY }
+
+    /**
+     * Загрузка одной связи: всё, что раньше вычислялось при каждом вызове
+     * (целевой тип, поля id, FK-колонки, начало SQL), резолвится один раз здесь.
+     */
+    private static final class RelationFetch {
+        final RelationshipMetadata rel;
+        final FetchKind kind;
+        final Class<?> targetType;
+        final Field parentIdField;   // @Id владельца
+        final Field targetIdField;   // @Id связанной сущности
+        final Field childKeyField;   // поле mappedBy у ребёнка (ONE_TO_MANY / inverse ONE_TO_ONE)
+        final Field childKeyIdField; // @Id внутри childKeyField, если там stub-ссылка, иначе null
+        final String selectPrefix;   // SELECT <selectList> FROM target WHERE col IN (
+        final String linkPrefix;     // SELECT owner, target FROM joinTable WHERE owner IN (
+
+        RelationFetch(EntityMetadata parentMeta, RelationshipMetadata rel) {
+            this.rel = rel;
+            this.targetType = rel.targetType;
+            EntityMetadata tm = new EntityMetadata(targetType);
+            this.parentIdField = parentMeta.idFields.isEmpty() ? null : parentMeta.idFields.get(0);
+            this.targetIdField = tm.idFields.isEmpty() ? null : tm.idFields.get(0);
+
+            boolean inverse = rel.mappedBy != null && !rel.mappedBy.isEmpty();
+            this.kind = switch (rel.type) {
+                case MANY_TO_ONE  -> FetchKind.MANY_TO_ONE;
+                case ONE_TO_ONE   -> inverse ? FetchKind.INVERSE_ONE_TO_ONE : FetchKind.MANY_TO_ONE;
+                case ONE_TO_MANY  -> FetchKind.ONE_TO_MANY;
+                case MANY_TO_MANY -> FetchKind.MANY_TO_MANY;
+            };
+
+            Field keyField = null, keyIdField = null;
+            String select = null, link = null;
+            switch (kind) {
+                case MANY_TO_ONE -> select = String.format("SELECT %s FROM %s WHERE %s IN (",
+                        tm.selectList(), tm.tableName, tm.idColumns.get(0));
+                case INVERSE_ONE_TO_ONE, ONE_TO_MANY -> {
+                    keyField = declaredField(targetType, rel.mappedBy);
+                    if (keyField != null && !keyField.getType().isPrimitive()
+                            && new EntityMetadata(keyField.getType()).idFields.size() > 0) {
+                        keyIdField = new EntityMetadata(keyField.getType()).idFields.get(0);
+                    }
+                    select = String.format("SELECT %s FROM %s WHERE %s IN (",
+                            tm.selectList(), tm.tableName, rel.mappedByColumn());
+                }
+                case MANY_TO_MANY -> {
+                    String ownerCol  = rel.ownerJoinColumn(parentMeta.idColumns.get(0));
+                    String targetCol = rel.targetJoinColumn(tm.idColumns.get(0));
+                    link = String.format("SELECT %s AS owner_id, %s AS target_id FROM %s WHERE %s IN (",
+                            ownerCol, targetCol, rel.joinTable, ownerCol);
+                    select = String.format("SELECT %s FROM %s WHERE %s IN (",
+                            tm.selectList(), tm.tableName, tm.idColumns.get(0));
+                }
+            }
+            this.childKeyField = keyField;
+            this.childKeyIdField = keyIdField;
+            this.selectPrefix = select;
+            this.linkPrefix = link;
+        }
+
+        /** значение FK ребёнка на владельца: само поле mappedBy или id его stub'а */
+        Object childKey(Object child) throws IllegalAccessException {
+            Object v = childKeyField.get(child);
+            return (v != null && childKeyIdField != null) ? childKeyIdField.get(v) : v;
+        }
+
+        private static Field declaredField(Class<?> type, String name) {
+            try {
+                Field f = type.getDeclaredField(name);
+                f.setAccessible(true);
+                return f;
+            } catch (NoSuchFieldException e) {
+                throw new IllegalArgumentException("No mappedBy field '" + name + "' in " + type.getName(), e);
+            }
+        }
+    }
+
+    /** Узел графа загрузки по явным путям: тип и исходящие связи */
+    private static final class GraphNode {
+        final Class<?> type;
+        final EntityMetadata meta;
+        final List<RelationFetch> fetches = new ArrayList<>();
+        final List<GraphNode> children = new ArrayList<>();
+
+        GraphNode(Class<?> type, EntityMetadata meta) {
+            this.type = type;
+            this.meta = meta;
+        }
+    }
 
     public RelationQueryExecutor(JdbcTemplate jdbc,
                                  EntityMapper mapper,
@@ -33,43 +140,102 @@ public class RelationQueryExecutor implements QueryExecutor {
                                  String[] paramNames,
                                  Class<?> rootType,
                                  boolean isList) {
+        this(jdbc, mapper, sql, paramNames, rootType, isList, null);
+    }
+
+    public RelationQueryExecutor(JdbcTemplate jdbc,
+                                 EntityMapper mapper,
+                                 String sql,
+                                 String[] paramNames,
+                                 Class<?> rootType,
+                                 boolean isList,
+                                 EntityGraph methodGraph) {
+        this(jdbc, mapper, sql, paramNames, rootType, isList, methodGraph, null);
+    }
+
+    public RelationQueryExecutor(JdbcTemplate jdbc,
+                                 EntityMapper mapper,
+                                 String sql,
+                                 String[] paramNames,
+                                 Class<?> rootType,
+                                 boolean isList,
+                                 EntityGraph methodGraph,
+                                 OffHeapEntityCache entityCache) {
         this.jdbc     = jdbc;
+        this.entityCache = entityCache;
         this.mapper   = mapper;
         this.rootType = rootType;
         this.isList   = isList;
         this.rootMeta = new EntityMetadata(rootType);
 
-        List<Integer> order = new ArrayList<>();
-        Pattern named = Pattern.compile(":(\\w+)");
-        Matcher mn = named.matcher(sql);
-        StringBuffer sb1 = new StringBuffer();
-        while (mn.find()) {
-            String name = mn.group(1);
-            int idx = Arrays.asList(paramNames).indexOf(name);
-            if (idx < 0) {
-                throw new IllegalArgumentException("Unknown parameter name in query: " + name);
-            }
-            order.add(idx);
-            mn.appendReplacement(sb1, "?");
+        ParsedSql parsed = new ParsedSql(sql, paramNames);
+        this.parsedSql = parsed.sql;
+        this.paramOrder = parsed.paramOrder;
+
+        this.fetchPlan = compileFetchPlan();
+        this.methodGraph = methodGraph;
+        if (methodGraph != null && !methodGraph.getPaths().isEmpty()) {
+            compiledGraphs.put(methodGraph, compileGraph(methodGraph));
         }
-        mn.appendTail(sb1);
-        String afterNamed = sb1.toString();
-
-        // обрабатываем ?1,?2… позиционные
-        Pattern positional = Pattern.compile("\\?(\\d+)");
-        Matcher mp = positional.matcher(afterNamed);
-        StringBuffer sb2 = new StringBuffer();
-        while (mp.find()) {
-            int pos = Integer.parseInt(mp.group(1)) - 1;
-            order.add(pos);
-            mp.appendReplacement(sb2, "?");
+    }
+
+    /**
+     * Строит дерево загрузки по путям графа; связи грузятся независимо от их FetchType.
+     */
+    private GraphNode compileGraph(EntityGraph graph) {
+        GraphNode root = new GraphNode(rootType, rootMeta);
+        for (String path : graph.getPaths()) {
+            GraphNode node = root;
+            String[] segments = path.split("\\.");
+            for (int depth = 0; depth < segments.length; depth++) {
+                if (graph.getMaxDepth() >= 0 && depth >= graph.getMaxDepth()) break;
+                String name = segments[depth];
+                int idx = -1;
+                for (int i = 0; i < node.fetches.size(); i++) {
+                    if (node.fetches.get(i).rel.field.getName().equals(name)) idx = i;
+                }
+                if (idx < 0) {
+                    RelationshipMetadata rel = node.meta.relations.stream()
+                            .filter(r -> r.field.getName().equals(name))
+                            .findFirst()
+                            .orElseThrow(() -> new IllegalArgumentException(
+                                    "Unknown relation '" + name + "' in fetch path '" + path + "'"));
+                    if (node.type.isRecord()) {
+                        throw new IllegalArgumentException("Relation '" + name + "' of record "
+                                + node.type.getSimpleName() + " cannot be loaded: record fields are final");
+                    }
+                    node.fetches.add(new RelationFetch(node.meta, rel));
+                    node.children.add(new GraphNode(rel.targetType, new EntityMetadata(rel.targetType)));
+                    idx = node.fetches.size() - 1;
+                }
+                node = node.children.get(idx);
+            }
         }
-        mp.appendTail(sb2);
-        this.parsedSql = sb2.toString();
+        return root;
+    }
 
-        this.paramOrder = order.isEmpty()
-                ? null
-                : order.stream().mapToInt(i -> i).toArray();
+    /**
+     * Обходит все типы, достижимые по EAGER-связям от rootType, и компилирует их загрузку.
+     */
+    private Map<Class<?>, List<RelationFetch>> compileFetchPlan() {
+        Map<Class<?>, List<RelationFetch>> plan = new HashMap<>();
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.add(rootType);
+        while (!queue.isEmpty()) {
+            Class<?> cls = queue.poll();
+            if (plan.containsKey(cls)) continue;
+            EntityMetadata meta = cls == rootType ? rootMeta : new EntityMetadata(cls);
+            List<RelationFetch> fetches = new ArrayList<>();
+            for (RelationshipMetadata rel : meta.relations) {
+                // в record связь не записать: @ManyToOne остаётся stub'ом, коллекции — как в конструкторе
+                if (rel.fetch == FetchType.LAZY || cls.isRecord()) continue;
+                RelationFetch f = new RelationFetch(meta, rel);
+                fetches.add(f);
+                queue.add(f.targetType);
+            }
+            plan.put(cls, fetches);
+        }
+        return plan;
     }
 
     @Override
@@ -90,299 +256,316 @@ public class RelationQueryExecutor implements QueryExecutor {
                 finalArgs
         );
         if (roots.isEmpty()) return isList ? roots : null;
+        return withRelations(roots);
+    }
+
+    /**
+     * Догружает связи уже полученных корней (например, взятых из кэша) так же, как после запроса.
+     */
+    public Object withRelations(List<Object> roots) {
+        EntityGraph graph = EntityGraph.current() != null ? EntityGraph.current() : methodGraph;
+        skippedRelations.set(false);
+        try {
+            attachLazy(rootType, roots);
+            if (graph != null && !graph.getPaths().isEmpty()) {
+                loadGraph(roots, compiledGraphs.computeIfAbsent(graph, this::compileGraph));
+            } else {
+                loadEager(roots, graph == null ? -1 : graph.getMaxDepth());
+            }
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        }
+        if (skippedRelations.get()) {
+            Deadline.recordTimeout(InvocationContext.currentMethod());
+            skippedRelations.remove();
+        }
 
-        // Batch-загрузка связей, как раньше
+        return isList ? roots : roots.get(0);
+    }
+
+    /**
+     * Batch-загрузка EAGER-связей по скомпилированному плану, не глубже maxDepth (-1 — без ограничения).
+     */
+    private void loadEager(List<Object> roots, int maxDepth) throws IllegalAccessException {
         Map<Class<?>, List<Object>> toProcess = new LinkedHashMap<>();
         toProcess.put(rootType, roots);
         Set<Class<?>> visited = new HashSet<>();
 
-        while (!toProcess.isEmpty()) {
+        for (int depth = 0; !toProcess.isEmpty() && (maxDepth < 0 || depth < maxDepth); depth++) {
             Map<Class<?>, List<Object>> next = new LinkedHashMap<>();
             for (var entry : toProcess.entrySet()) {
                 Class<?> cls = entry.getKey();
                 if (!visited.add(cls)) continue;
-                EntityMetadata meta = new EntityMetadata(cls);
-                for (RelationshipMetadata rel : meta.relations) {
-                    if (rel.fetch == FetchType.LAZY) continue;
-                    switch (rel.type) {
-                        case MANY_TO_ONE  -> batchManyToOne  (entry.getValue(), rel, next);
-                        case ONE_TO_ONE   -> batchOneToOne   (entry.getValue(), meta, rel, next);
-                        case ONE_TO_MANY  -> batchOneToMany  (entry.getValue(), meta, rel, next);
-                        case MANY_TO_MANY -> batchManyToMany (entry.getValue(), meta, rel, next);
-                    }
+                for (RelationFetch f : fetchPlan.getOrDefault(cls, Collections.emptyList())) {
+                    fetch(f, entry.getValue(), next);
                 }
             }
             toProcess = next;
         }
+    }
 
-        return isList ? roots : roots.get(0);
+    /**
+     * Batch-загрузка по дереву явного графа: каждый путь грузится ровно один раз.
+     */
+    private void loadGraph(List<Object> roots, GraphNode root) throws IllegalAccessException {
+        List<Map.Entry<GraphNode, List<Object>>> level = new ArrayList<>();
+        level.add(Map.entry(root, roots));
+        while (!level.isEmpty()) {
+            List<Map.Entry<GraphNode, List<Object>>> nextLevel = new ArrayList<>();
+            for (var entry : level) {
+                GraphNode node = entry.getKey();
+                for (int i = 0; i < node.fetches.size(); i++) {
+                    RelationFetch f = node.fetches.get(i);
+                    Map<Class<?>, List<Object>> loaded = new HashMap<>();
+                    fetch(f, entry.getValue(), loaded);
+                    List<Object> children = loaded.get(f.targetType);
+                    if (children != null && !children.isEmpty()) {
+                        nextLevel.add(Map.entry(node.children.get(i), children));
+                    }
+                }
+            }
+            level = nextLevel;
+        }
     }
 
-    private void batchManyToOne(List<Object> parents,
-                                RelationshipMetadata rel,
-                                Map<Class<?>, List<Object>> next) {
-        Class<?> targetType = rel.field.getType();
-        EntityMetadata tm = new EntityMetadata(targetType);
+    private void fetch(RelationFetch f,
+                       List<Object> parents,
+                       Map<Class<?>, List<Object>> next) throws IllegalAccessException {
+        if (deadlinePassed(f)) return;
+        try {
+            switch (f.kind) {
+                case MANY_TO_ONE        -> batchManyToOne  (parents, f, next);
+                case INVERSE_ONE_TO_ONE -> batchOneToOne   (parents, f, next);
+                case ONE_TO_MANY        -> batchOneToMany  (parents, f, next);
+                case MANY_TO_MANY       -> batchManyToMany (parents, f, next);
+            }
+        } catch (RuntimeException ex) {
+            // запрос отменён или не начат по сроку: при SKIP_RELATIONS это пропуск связи
+            Deadline deadline = Deadline.current();
+            if (deadline == null || !deadline.isExpired() || deadline.getExpiry() != Deadline.Expiry.SKIP_RELATIONS) {
+                throw ex;
+            }
+            log.debug("Deadline passed while loading {}: {}", f.rel.field.getName(), ex.toString());
+            skippedRelations.set(true);
+        }
+    }
 
+    /** ставит LazyValue в ленивые колонки сущностей одного результата */
+    private void attachLazy(Class<?> type, List<Object> entities) throws IllegalAccessException {
+        Optional<LazyColumnLoader> loader = lazyLoaders.computeIfAbsent(type, t ->
+                LazyColumnLoader.hasLazyColumns(t) ? Optional.of(new LazyColumnLoader(jdbc, t)) : Optional.empty());
+        if (loader.isPresent()) loader.get().attach(entities);
+        // update() не должен принять незагруженную коллекцию @ManyToMany за пустую
+        if (manyToManyOwners.computeIfAbsent(type, RelationQueryExecutor::hasManyToMany)) {
+            for (Object entity : entities) LoadedRelations.markRead(entity);
+        }
+    }
+
+    private static boolean hasManyToMany(Class<?> type) {
+        return new EntityMetadata(type).relations.stream()
+                .anyMatch(r -> r.type == RelationshipMetadata.RelationType.MANY_TO_MANY);
+    }
+
+    /**
+     * Срок вызова истёк: при SKIP_RELATIONS связь не грузится (поле остаётся как есть),
+     * иначе вызов прерывается.
+     */
+    private boolean deadlinePassed(RelationFetch f) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null || !deadline.isExpired()) return false;
+        if (deadline.getExpiry() == Deadline.Expiry.SKIP_RELATIONS) {
+            log.debug("Deadline passed, skipping relation {}.{}",
+                    f.rel.field.getDeclaringClass().getSimpleName(), f.rel.field.getName());
+            skippedRelations.set(true);
+            return true;
+        }
+        throw new DeadlineExceededException(InvocationContext.currentMethod(),
+                "before loading " + f.rel.field.getDeclaringClass().getSimpleName() + "." + f.rel.field.getName());
+    }
+
+    private static String inClause(String prefix, int size) {
+        StringBuilder sb = new StringBuilder(prefix.length() + size * 2);
+        sb.append(prefix);
+        for (int i = 0; i < size; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.append(')').toString();
+    }
+
+    private List<Object> parentIds(List<Object> parents, RelationFetch f) throws IllegalAccessException {
+        List<Object> pids = new ArrayList<>(parents.size());
+        for (Object p : parents) {
+            pids.add(f.parentIdField.get(p));
+        }
+        return pids;
+    }
+
+    private void batchManyToOne(List<Object> parents,
+                                RelationFetch f,
+                                Map<Class<?>, List<Object>> next) throws IllegalAccessException {
         // собрать (parent → FK) и уникальные FK
         Map<Object, List<Object>> fkToParents = new HashMap<>();
         for (Object p : parents) {
-            try {
-                Object stub = rel.field.get(p);
-                if (stub == null) continue;
-                Field idF = tm.idFields.get(0);
-                idF.setAccessible(true);
-                Object id = idF.get(stub);
-                if (id != null) {
-                    fkToParents.computeIfAbsent(id, k->new ArrayList<>()).add(p);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
+            Object stub = f.rel.field.get(p);
+            if (stub == null) continue;
+            Object id = f.targetIdField.get(stub);
+            if (id != null) {
+                fkToParents.computeIfAbsent(id, k->new ArrayList<>()).add(p);
             }
         }
         if (fkToParents.isEmpty()) return;
 
-        List<Object> ids = new ArrayList<>(fkToParents.keySet());
-        String in  = ids.stream().map(i->"?").collect(Collectors.joining(","));
-        String qs  = String.format("SELECT * FROM %s WHERE %s IN (%s)",
-                tm.tableName, tm.idColumns.get(0), in);
-        log.debug("Batch MANY_TO_ONE [{}] SQL: {} | params: {}",
-                targetType.getSimpleName(), qs, ids);
-
-        // получить всех детей
-        List<Object> children = jdbc.query(qs,
-                (rs,rn)->mapper.map(rs, targetType),
-                ids.toArray()
-        );
+        // сначала кэш строк, запросом — только промахи
+        List<Object> children = new ArrayList<>();
+        List<Object> ids = new ArrayList<>();
+        for (Object id : fkToParents.keySet()) {
+            Object cached = entityCache == null ? null : entityCache.get(f.targetType, id);
+            if (cached != null) children.add(cached); else ids.add(id);
+        }
+        if (!ids.isEmpty()) {
+            String qs = inClause(f.selectPrefix, ids.size());
+            log.debug("Batch MANY_TO_ONE [{}] SQL: {} | params: {}",
+                    f.targetType.getSimpleName(), qs, ids);
+
+            // как в CachedFindByIdExecutor: отметки до чтения, в транзакции кэш не заполняется
+            boolean fill = entityCache != null && !TransactionSynchronizationManager.isActualTransactionActive();
+            Map<Object, Long> stamps = new HashMap<>();
+            if (fill) {
+                for (Object id : ids) stamps.put(id, entityCache.stamp(f.targetType, id));
+            }
+            // получить всех детей
+            List<Object> loaded = jdbc.query(qs,
+                    (rs,rn)->mapper.map(rs, f.targetType),
+                    ids.toArray()
+            );
+            if (fill) {
+                for (Object child : loaded) {
+                    Long stamp = stamps.get(f.targetIdField.get(child));
+                    if (stamp != null) entityCache.put(child, stamp);
+                }
+            }
+            children.addAll(loaded);
+        }
+        attachLazy(f.targetType, children);
         // сгруппировать child by id
         Map<Object,Object> idToChild = new HashMap<>();
         for (Object c : children) {
-            try {
-                Field idF = tm.idFields.get(0);
-                idF.setAccessible(true);
-                idToChild.put(idF.get(c), c);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
-            }
+            idToChild.put(f.targetIdField.get(c), c);
         }
         // записать обратно в родителей
-        fkToParents.forEach((id, ps) -> {
-            Object child = idToChild.get(id);
-            for (Object p : ps) {
-                try { rel.field.set(p, child); }
-                catch (Exception ex) { throw new RuntimeException(ex); }
+        for (var e : fkToParents.entrySet()) {
+            Object child = idToChild.get(e.getKey());
+            for (Object p : e.getValue()) {
+                f.rel.field.set(p, child);
             }
-        });
+        }
 
         // добавляем детей в очередь на следующий виток
-        next.merge(targetType, children, (old, more)->{ old.addAll(more); return old; });
+        next.merge(f.targetType, children, (old, more)->{ old.addAll(more); return old; });
     }
 
     private void batchOneToOne(List<Object> parents,
-                               EntityMetadata parentMeta,
-                               RelationshipMetadata rel,
-                               Map<Class<?>, List<Object>> next) {
-        if (Objects.requireNonNull(rel.mappedBy).isEmpty()) {
-            // владеющая сторона – копируем логику MANY_TO_ONE
-            batchManyToOne(parents, rel, next);
-        } else {
-            // inverse: FK лежит в target-таблице как столбец mappedBy
-            Class<?> targetType = rel.field.getType();
-            EntityMetadata tm = new EntityMetadata(targetType);
-            String fk   = rel.mappedBy;
-
-            // собрать parent IDs
-            List<Object> pids = parents.stream().map(p->{
-                try {
-                    Field idF = parentMeta.idFields.get(0);
-                    idF.setAccessible(true);
-                    return idF.get(p);
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
-                }
-            }).collect(Collectors.toList());
-            if (pids.isEmpty()) return;
-            String in  = pids.stream().map(i->"?").collect(Collectors.joining(","));
-            String qs  = String.format("SELECT * FROM %s WHERE %s IN (%s)",
-                    tm.tableName, fk, in);
-            log.debug("Batch ONE_TO_ONE [{}] SQL: {} | params: {}",
-                    targetType.getSimpleName(), qs, pids);
-
-            List<Object> children = jdbc.query(qs,
-                    (rs,rn)->mapper.map(rs, targetType),
-                    pids.toArray()
-            );
-            // сгруппировать по FK (значение в поле mappedBy)
-            Map<Object,Object> ownerToChild = new HashMap<>();
-            for (Object c : children) {
-                try {
-                    Field fkField = c.getClass().getDeclaredField(fk);
-                    fkField.setAccessible(true);
-                    ownerToChild.put(fkField.get(c), c);
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
-                }
-            }
-            // записать обратно
-            for (int i = 0; i < parents.size(); i++) {
-                Object p = parents.get(i);
-                Object pid = pids.get(i);
-                try { rel.field.set(p, ownerToChild.get(pid)); }
-                catch (Exception ex) { throw new RuntimeException(ex); }
-            }
+                               RelationFetch f,
+                               Map<Class<?>, List<Object>> next) throws IllegalAccessException {
+        // inverse: FK лежит в target-таблице как столбец mappedBy
+        List<Object> pids = parentIds(parents, f);
+        if (pids.isEmpty()) return;
+        String qs = inClause(f.selectPrefix, pids.size());
+        log.debug("Batch ONE_TO_ONE [{}] SQL: {} | params: {}",
+                f.targetType.getSimpleName(), qs, pids);
 
-            next.merge(targetType, children, (o,n)->{ o.addAll(n); return o; });
+        List<Object> children = jdbc.query(qs,
+                (rs,rn)->mapper.map(rs, f.targetType),
+                pids.toArray()
+        );
+        attachLazy(f.targetType, children);
+        // сгруппировать по FK (значение в поле mappedBy)
+        Map<Object,Object> ownerToChild = new HashMap<>();
+        for (Object c : children) {
+            ownerToChild.put(f.childKey(c), c);
+        }
+        // записать обратно
+        for (int i = 0; i < parents.size(); i++) {
+            f.rel.field.set(parents.get(i), ownerToChild.get(pids.get(i)));
         }
+
+        next.merge(f.targetType, children, (o,n)->{ o.addAll(n); return o; });
     }
 
     private void batchOneToMany(List<Object> parents,
-                                EntityMetadata parentMeta,
-                                RelationshipMetadata rel,
-                                Map<Class<?>, List<Object>> next) {
-        // child side
-        ParameterizedType pt = (ParameterizedType) rel.field.getGenericType();
-        Class<?> childType = (Class<?>) pt.getActualTypeArguments()[0];
-        EntityMetadata cm = new EntityMetadata(childType);
-
-        Field childFld;
-        try {
-            childFld = childType.getDeclaredField(Objects.requireNonNull(rel.mappedBy));
-        } catch (NoSuchFieldException e) {
-            throw new RuntimeException(e);
-        }
-        String fkCol = childFld.getAnnotation(JoinColumn.class).name();
-
+                                RelationFetch f,
+                                Map<Class<?>, List<Object>> next) throws IllegalAccessException {
         // собрать parent IDs
-        List<Object> pids = parents.stream().map(p->{
-            try {
-                Field idF = parentMeta.idFields.get(0);
-                idF.setAccessible(true);
-                return idF.get(p);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
-            }
-        }).collect(Collectors.toList());
+        List<Object> pids = parentIds(parents, f);
         if (pids.isEmpty()) return;
-        String in  = pids.stream().map(i->"?").collect(Collectors.joining(","));
-        String qs  = String.format("SELECT * FROM %s WHERE %s IN (%s)",
-                cm.tableName, fkCol, in);
+        String qs = inClause(f.selectPrefix, pids.size());
         log.debug("Batch ONE_TO_MANY [{}] SQL: {} | params: {}",
-                childType.getSimpleName(), qs, pids);
+                f.targetType.getSimpleName(), qs, pids);
 
         List<Object> children = jdbc.query(qs,
-                (rs,rn)->mapper.map(rs, childType),
+                (rs,rn)->mapper.map(rs, f.targetType),
                 pids.toArray()
         );
+        attachLazy(f.targetType, children);
         // сгруппировать по parent FK
         Map<Object,List<Object>> grouping = new HashMap<>();
         for (Object c: children) {
-            try {
-                Field fkField = c.getClass().getDeclaredField(rel.mappedBy);
-                fkField.setAccessible(true);
-                Object ownerId = fkField.get(c);
-                grouping.computeIfAbsent(ownerId, k->new ArrayList<>()).add(c);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
-            }
+            grouping.computeIfAbsent(f.childKey(c), k->new ArrayList<>()).add(c);
         }
         // записать обратно
         for (int i=0;i<parents.size();i++) {
-            Object p = parents.get(i);
-            Object pid = pids.get(i);
-            List<Object> list = grouping.getOrDefault(pid, Collections.emptyList());
-            try { rel.field.set(p, list); }
-            catch (Exception ex) { throw new RuntimeException(ex); }
+            List<Object> list = grouping.getOrDefault(pids.get(i), Collections.emptyList());
+            f.rel.field.set(parents.get(i), list);
         }
 
-        next.merge(childType, children, (o,n)->{ o.addAll(n); return o; });
+        next.merge(f.targetType, children, (o,n)->{ o.addAll(n); return o; });
     }
 
     private void batchManyToMany(List<Object> parents,
-                                 EntityMetadata parentMeta,
-                                 RelationshipMetadata rel,
-                                 Map<Class<?>, List<Object>> next) {
-        // целевой тип
-        ParameterizedType pt = (ParameterizedType) rel.field.getGenericType();
-        Class<?> targetType = (Class<?>) pt.getActualTypeArguments()[0];
-        EntityMetadata tm = new EntityMetadata(targetType);
-
-        String joinTbl = rel.joinTable;
-        // owner FK и target FK
-        JoinColumn ownerJ = rel.joinColumns.stream()
-                .filter(j->j.referencedColumnName().equalsIgnoreCase(parentMeta.idColumns.get(0)))
-                .findFirst().orElseThrow();
-        JoinColumn targetJ= rel.joinColumns.stream()
-                .filter(j->j.referencedColumnName().equalsIgnoreCase(tm.idColumns.get(0)))
-                .findFirst().orElseThrow();
-        String ownerCol = ownerJ.name(), targetCol = targetJ.name();
-
+                                 RelationFetch f,
+                                 Map<Class<?>, List<Object>> next) throws IllegalAccessException {
         // 1) собрать parent IDs
-        List<Object> pids = parents.stream().map(p->{
-            try {
-                Field idF = parentMeta.idFields.get(0);
-                idF.setAccessible(true);
-                return idF.get(p);
-            } catch (Exception ex) { throw new RuntimeException(ex); }
-        }).collect(Collectors.toList());
+        List<Object> pids = parentIds(parents, f);
         if (pids.isEmpty()) return;
-        String in1 = pids.stream().map(i->"?").collect(Collectors.joining(","));
 
         // 2) из joinTable вытянуть пары owner→target
-        String jql = String.format(
-                "SELECT %s AS owner_id, %s AS target_id FROM %s WHERE %s IN (%s)",
-                ownerCol, targetCol, joinTbl, ownerCol, in1
-        );
+        String jql = inClause(f.linkPrefix, pids.size());
         log.debug("Batch MANY_TO_MANY map SQL: {} | params: {}", jql, pids);
-        List<Map<String,Object>> rows = jdbc.query(jql,
-                (rs,rn)->{
-                    Map<String,Object> m = new HashMap<>();
-                    m.put("o", rs.getObject(1));
-                    m.put("t", rs.getObject(2));
-                    return m;
+        Map<Object,List<Object>> map = new HashMap<>();
+        jdbc.query(jql,
+                rs -> {
+                    map.computeIfAbsent(rs.getObject(1), k->new ArrayList<>()).add(rs.getObject(2));
                 },
                 pids.toArray()
         );
-        // группировать owner→List<targetId>
-        Map<Object,List<Object>> map = new HashMap<>();
-        rows.forEach(r-> map.computeIfAbsent(r.get("o"), k->new ArrayList<>()).add(r.get("t")));
-        if (map.isEmpty()) return;
-
-        // 3) вытянуть всех target
-        Set<Object> allT = map.values().stream().flatMap(List::stream).collect(Collectors.toSet());
-        String in2 = allT.stream().map(i->"?").collect(Collectors.joining(","));
-        String sql2= String.format("SELECT * FROM %s WHERE %s IN (%s)",
-                tm.tableName, tm.idColumns.get(0), in2);
-        log.debug("Batch MANY_TO_MANY [{}] SQL: {} | params: {}",
-                targetType.getSimpleName(), sql2, allT);
-        List<Object> targets = jdbc.query(sql2,
-                (rs,rn)->mapper.map(rs, targetType),
-                allT.toArray()
-        );
+        // 3) вытянуть всех target (ссылок нет — коллекции всё равно загружены, пустыми)
+        Set<Object> allT = new LinkedHashSet<>();
+        map.values().forEach(allT::addAll);
+        List<Object> targets = new ArrayList<>();
+        if (!allT.isEmpty()) {
+            String sql2 = inClause(f.selectPrefix, allT.size());
+            log.debug("Batch MANY_TO_MANY [{}] SQL: {} | params: {}",
+                    f.targetType.getSimpleName(), sql2, allT);
+            targets = jdbc.query(sql2,
+                    (rs,rn)->mapper.map(rs, f.targetType),
+                    allT.toArray()
+            );
+            attachLazy(f.targetType, targets);
+        }
         // id→object
         Map<Object,Object> id2obj = new HashMap<>();
         for (Object t : targets) {
-            try {
-                Field idF = tm.idFields.get(0);
-                idF.setAccessible(true);
-                id2obj.put(idF.get(t), t);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
-            }
+            id2obj.put(f.targetIdField.get(t), t);
         }
-        // 4) записать обратно в родителей
-        for (Object p: parents) {
-            try {
-                Field idF = parentMeta.idFields.get(0);
-                idF.setAccessible(true);
-                Object pid = idF.get(p);
-                List<Object> tids = map.getOrDefault(pid, Collections.emptyList());
-                List<Object> objs = tids.stream().map(id2obj::get).collect(Collectors.toList());
-                rel.field.set(p, objs);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
-            }
+        // 4) записать обратно в родителей; update() синхронизирует joinTable только по загруженным
+        for (int i = 0; i < parents.size(); i++) {
+            List<Object> tids = map.getOrDefault(pids.get(i), Collections.emptyList());
+            List<Object> objs = new ArrayList<>(tids.size());
+            for (Object tid : tids) objs.add(id2obj.get(tid));
+            f.rel.field.set(parents.get(i), objs);
+            LoadedRelations.markLoaded(parents.get(i), f.rel.field);
         }
 
-        next.merge(targetType, targets, (o,n)->{ o.addAll(n); return o; });
+        if (!targets.isEmpty()) next.merge(f.targetType, targets, (o,n)->{ o.addAll(n); return o; });
     }
 }
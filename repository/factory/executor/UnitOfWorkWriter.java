@@ -0,0 +1,108 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.repository.UnitOfWork;
+import com.db.kurs.orm.repository.factory.cache.ChangeLog;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Сброс изменений UnitOfWork для одного типа сущности: SQL тот же, что у
+ * InsertExecutor / UpdateExecutor / DeleteExecutor, но выполняется JDBC-батчами по batchSize строк.
+ * Изменённые и удалённые id пишутся в ChangeLog (если задан) вместе с самими изменениями.
+ */
+public class UnitOfWorkWriter implements UnitOfWork.Writer {
+    private final Class<?> entityType;
+    private final Field idField;
+    private final Set<Class<?>> dependsOn;
+    private final InsertExecutor insert;
+    private final UpdateExecutor update;
+    private final DeleteExecutor delete;
+    private final int batchSize;
+    private final ChangeLog changeLog;   // null — без журнала
+
+    public UnitOfWorkWriter(JdbcTemplate jdbc,
+                            EntityMapper entityMapper,
+                            String tableName,
+                            Class<?> entityType,
+                            String idFieldName,
+                            String idColumn,
+                            int batchSize) {
+        this(jdbc, entityMapper, tableName, entityType, idFieldName, idColumn, batchSize, null);
+    }
+
+    public UnitOfWorkWriter(JdbcTemplate jdbc,
+                            EntityMapper entityMapper,
+                            String tableName,
+                            Class<?> entityType,
+                            String idFieldName,
+                            String idColumn,
+                            int batchSize,
+                            ChangeLog changeLog) {
+        this.entityType = entityType;
+        this.changeLog = changeLog;
+        this.batchSize = batchSize;
+        try {
+            this.idField = entityType.getDeclaredField(idFieldName);
+            idField.setAccessible(true);
+        } catch (NoSuchFieldException ex) {
+            throw new RepositoryException("No @Id field '" + idFieldName + "' in " + entityType.getName());
+        }
+        ColumnLayout layout = new ColumnLayout(entityMapper, entityType);
+        Set<Class<?>> parents = new LinkedHashSet<>();
+        for (Field rf : layout.relationFields) {
+            if (rf.getType() != entityType) parents.add(rf.getType());
+        }
+        this.dependsOn = Collections.unmodifiableSet(parents);
+        this.insert = new InsertExecutor(jdbc, entityMapper, tableName, entityType);
+        this.update = new UpdateExecutor(jdbc, entityMapper, tableName, entityType, idFieldName, idColumn, batchSize);
+        this.delete = new DeleteExecutor(jdbc, tableName, entityType, idColumn, batchSize);
+    }
+
+    @Override
+    public Class<?> entityType() {
+        return entityType;
+    }
+
+    @Override
+    public Set<Class<?>> dependsOn() {
+        return dependsOn;
+    }
+
+    @Override
+    public Object idOf(Object entity) {
+        try {
+            return idField.get(entity);
+        } catch (IllegalAccessException ex) {
+            throw new RepositoryException("Cannot read @Id of " + entityType.getName());
+        }
+    }
+
+    @Override
+    public void insert(List<Object> entities) {
+        for (int from = 0; from < entities.size(); from += batchSize) {
+            insert.executeBatch(entities.subList(from, Math.min(from + batchSize, entities.size())));
+        }
+    }
+
+    @Override
+    public void update(List<Object> entities) {
+        for (int from = 0; from < entities.size(); from += batchSize) {
+            update.executeBatch(entities.subList(from, Math.min(from + batchSize, entities.size())));
+        }
+        if (changeLog != null) {
+            List<Object> ids = new ArrayList<>(entities.size());
+            for (Object e : entities) ids.add(idOf(e));
+            changeLog.record(entityType, ids);
+        }
+    }
+
+    @Override
+    public void delete(List<Object> ids) {
+        delete.execute(new Object[]{ids});
+        if (changeLog != null) changeLog.record(entityType, ids);
+    }
+}
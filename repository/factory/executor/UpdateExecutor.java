@@ -1,24 +1,34 @@
 package com.db.kurs.orm.repository.factory.executor;
 
 import com.db.kurs.exception.RepositoryException;
-import com.db.kurs.orm.annotation.link.JoinColumn;
 import com.db.kurs.orm.mapper.EntityMapper;
 import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.metadata.RelationshipMetadata;
+import com.db.kurs.orm.repository.LazyValue;
+import com.db.kurs.orm.repository.OptimisticLockException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 
 import java.lang.reflect.Field;
-import java.sql.Types;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.*;
 
 @Slf4j
 public class UpdateExecutor implements QueryExecutor {
     private final JdbcTemplate jdbc;
     private final PreparedStatementCreatorFactory pscFactory;
+    private final String sql;
+    private final int[] sqlTypes;
     private final Field idField;
-    private final List<Field> updateFields;      // поля-колонки
-    private final List<Field> relationFields;    // поля-связи
+    private final ColumnLayout layout;           // поля-колонки и поля-связи
+    private final List<ManyToManySync> joinTables = new ArrayList<>(); // @ManyToMany
+    private final List<String> lazyUpdateSql = new ArrayList<>(); // UPDATE t SET lazy = ? WHERE id = ?
 
     /**
      * @param jdbc           JdbcTemplate
@@ -34,6 +44,19 @@ public class UpdateExecutor implements QueryExecutor {
                           Class<?> entityType,
                           String idFieldName,
                           String idColumn) {
+        this(jdbc, entityMapper, tableName, entityType, idFieldName, idColumn, 500);
+    }
+
+    /**
+     * @param batchSize максимальное число id в одном DELETE ... IN (...) при синхронизации @ManyToMany
+     */
+    public UpdateExecutor(JdbcTemplate jdbc,
+                          EntityMapper entityMapper,
+                          String tableName,
+                          Class<?> entityType,
+                          String idFieldName,
+                          String idColumn,
+                          int batchSize) {
         this.jdbc = jdbc;
 
         try {
@@ -43,98 +66,160 @@ public class UpdateExecutor implements QueryExecutor {
             throw new RepositoryException("No @Id field '" + idFieldName + "' in " + entityType.getName());
         }
 
-        // простые поля @Column (без @Id и без связей)
-        Map<String, Field> simple = entityMapper.getFields(entityType);
-        this.updateFields = new ArrayList<>(simple.values());
-
-        // поля-связи @ManyToOne и owner @OneToOne
-        this.relationFields = new ArrayList<>();
-        for (Field f : entityType.getDeclaredFields()) {
-            if (f.isAnnotationPresent(com.db.kurs.orm.annotation.link.ManyToOne.class) ||
-                    (f.isAnnotationPresent(com.db.kurs.orm.annotation.link.OneToOne.class) &&
-                            f.getAnnotation(com.db.kurs.orm.annotation.link.OneToOne.class).mappedBy().isEmpty())) {
-                f.setAccessible(true);
-                relationFields.add(f);
-            }
-        }
-
-        // Собираем имя всех колонок (простых + joinColumn.name()) и SQL-типы
-        List<String> columnNames = new ArrayList<>();
+        // простые поля @Column и FK связей @ManyToOne / owner @OneToOne
+        this.layout = new ColumnLayout(entityMapper, entityType);
+        List<String> columnNames = new ArrayList<>(layout.columnNames);
         List<Integer> sqlTypes    = new ArrayList<>();
+        for (int t : layout.sqlTypes) sqlTypes.add(t);
 
-        // простые
-        for (var entry : simple.entrySet()) {
-            columnNames.add(entry.getKey());
-            sqlTypes.add(mapJavaTypeToSqlType(entry.getValue().getType()));
+        // joinTable каждой загруженной @ManyToMany синхронизируются по разнице ссылок
+        EntityMetadata meta = new EntityMetadata(entityType);
+        for (RelationshipMetadata rel : meta.relations) {
+            if (rel.type == RelationshipMetadata.RelationType.MANY_TO_MANY) {
+                joinTables.add(new ManyToManySync(jdbc, meta, rel, batchSize));
+            }
         }
 
-        // связи: для каждой ManyToOne / OneToOne-owner берём @JoinColumn.name()
-        for (Field rf : relationFields) {
-            JoinColumn jc = rf.getAnnotation(JoinColumn.class);
-            if (jc == null) {
-                throw new RepositoryException("Relation field " + rf.getName() + " missing @JoinColumn");
-            }
-            columnNames.add(jc.name());
-            // тип — тот же, что и у PK целевой сущности; но JDBC примитивно: OTHER
-            sqlTypes.add(Types.OTHER);
+        // версия не пишется из поля: SET v = v + 1 ... AND v = ?
+        String versionColumn = null;
+        if (layout.versionIndex >= 0) {
+            versionColumn = columnNames.remove(layout.versionIndex);
+            sqlTypes.remove(layout.versionIndex);
         }
 
         // добавляем тип для id в WHERE
-        sqlTypes.add(mapJavaTypeToSqlType(idField.getType()));
+        sqlTypes.add(ColumnLayout.mapJavaTypeToSqlType(idField.getType()));
 
         // 4) строим SET-часть
-        String setClause = String.join(", ",
-                columnNames.stream().map(c -> c + " = ?").toArray(String[]::new)
-        );
+        List<String> assignments = new ArrayList<>();
+        for (String c : columnNames) assignments.add(c + " = ?");
+        String where = idColumn + " = ?";
+        if (versionColumn != null) {
+            assignments.add(versionColumn + " = " + versionColumn + " + 1");
+            where += " AND " + versionColumn + " = ?";
+            sqlTypes.add(layout.sqlTypes[layout.versionIndex]);
+        }
+        String setClause = String.join(", ", assignments);
 
-        String sql = String.format("UPDATE %s SET %s WHERE %s = ?", tableName, setClause, idColumn);
+        this.sql = String.format("UPDATE %s SET %s WHERE %s", tableName, setClause, where);
         log.debug("Prepared UPDATE SQL: {}", sql);
         System.out.println(sql);
 
-        this.pscFactory = new PreparedStatementCreatorFactory(
-                sql,
-                sqlTypes.stream().mapToInt(i -> i).toArray()
-        );
+        this.sqlTypes = sqlTypes.stream().mapToInt(i -> i).toArray();
+        this.pscFactory = new PreparedStatementCreatorFactory(sql, this.sqlTypes);
+
+        // ленивая колонка пишется отдельно и только если значение задано в коде
+        for (String c : layout.lazyColumnNames) {
+            lazyUpdateSql.add(String.format("UPDATE %s SET %s = ? WHERE %s = ?", tableName, c, idColumn));
+        }
     }
 
     @Override
     public Object execute(Object[] args) {
         Object entity = args[0];
         try {
-            List<Object> params = new ArrayList<>();
-            for (Field fld : updateFields) {
-                params.add(fld.get(entity));
-            }
-            for (Field rf : relationFields) {
-                Object related = rf.get(entity);
-                if (related == null) {
-                    params.add(null);
-                } else {
-                    Field pk = new EntityMapper().getFieldWithIdAnnotation(related.getClass());
-                    pk.setAccessible(true);
-                    params.add(pk.get(related));
-                }
-            }
-            params.add(idField.get(entity));
+            List<Object> params = params(entity);
+            Object id = idField.get(entity);
 
             log.debug("Executing UPDATE with params: {}", params);
-            jdbc.update(pscFactory.newPreparedStatementCreator(params));
+            int updated = jdbc.update(pscFactory.newPreparedStatementCreator(params));
+            if (layout.versionField != null) {
+                if (updated == 0) {
+                    throw new OptimisticLockException(idField.getDeclaringClass(), List.of(id));
+                }
+                bumpVersion(entity);
+            }
+            writeLazy(entity, id);
+            for (ManyToManySync sync : joinTables) {
+                sync.sync(entity, id);
+            }
             return entity;
+        } catch (RepositoryException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new RepositoryException("Failed to execute UPDATE");
         }
     }
 
-    private int mapJavaTypeToSqlType(Class<?> cls) {
-        if (cls == String.class)          return Types.VARCHAR;
-        if (cls == Integer.class|| cls==int.class)    return Types.INTEGER;
-        if (cls == Long.class   || cls==long.class)   return Types.BIGINT;
-        if (cls == Boolean.class|| cls==boolean.class)return Types.BOOLEAN;
-        if (cls == Double.class || cls==double.class)  return Types.DOUBLE;
-        if (cls == Float.class  || cls==float.class)   return Types.FLOAT;
-        if (cls == java.util.Date.class
-                || cls == java.sql.Timestamp.class)            return Types.TIMESTAMP;
-        if (cls == byte[].class)           return Types.BLOB;
-        return Types.OTHER;
+    /**
+     * UPDATE нескольких сущностей одним JDBC-батчем, затем синхронизация @ManyToMany каждой.
+     * При @Version строки, не прошедшие проверку версии, перечисляются в OptimisticLockException
+     * (после обработки остальных строк батча).
+     */
+    public void executeBatch(List<?> entities) {
+        if (entities.isEmpty()) return;
+        try {
+            List<List<Object>> rows = new ArrayList<>(entities.size());
+            List<Object> ids = new ArrayList<>(entities.size());
+            for (Object entity : entities) {
+                rows.add(params(entity));
+                ids.add(idField.get(entity));
+            }
+            log.debug("Executing UPDATE batch of {} rows: {}", rows.size(), sql);
+            int[] counts = jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    List<Object> params = rows.get(i);
+                    for (int c = 0; c < params.size(); c++) {
+                        StatementCreatorUtils.setParameterValue(ps, c + 1, sqlTypes[c], params.get(c));
+                    }
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return rows.size();
+                }
+            });
+            List<Object> conflicts = new ArrayList<>();
+            for (int i = 0; i < entities.size(); i++) {
+                // SUCCESS_NO_INFO (-2): драйвер не сообщил число строк, считаем успешным
+                if (layout.versionField != null && i < counts.length && counts[i] == 0) {
+                    conflicts.add(ids.get(i));
+                    continue;
+                }
+                if (layout.versionField != null) bumpVersion(entities.get(i));
+                writeLazy(entities.get(i), ids.get(i));
+                for (ManyToManySync sync : joinTables) {
+                    sync.sync(entities.get(i), ids.get(i));
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                throw new OptimisticLockException(idField.getDeclaringClass(), conflicts);
+            }
+        } catch (IllegalAccessException ex) {
+            throw new RepositoryException("Failed to execute UPDATE batch");
+        }
+    }
+
+    /** значения SET, id и (при @Version) ожидаемая версия — в порядке плейсхолдеров */
+    private List<Object> params(Object entity) throws IllegalAccessException {
+        List<Object> params = layout.values(entity);
+        Object version = layout.versionIndex >= 0 ? params.remove(layout.versionIndex) : null;
+        params.add(idField.get(entity));
+        if (layout.versionField != null) {
+            if (layout.versionField.get(entity) == null) {   // values() подставляет 1 для INSERT
+                throw new RepositoryException("@Version " + layout.versionField.getName() + " is null on update");
+            }
+            params.add(version);
+        }
+        return params;
+    }
+
+    /** изменённые ленивые колонки: по UPDATE на колонку; незагруженные не трогаются */
+    private void writeLazy(Object entity, Object id) throws IllegalAccessException {
+        for (int i = 0; i < layout.lazyFields.size(); i++) {
+            LazyValue<?> v = (LazyValue<?>) layout.lazyFields.get(i).get(entity);
+            if (v == null || !v.isDirty()) continue;
+            log.debug("Executing lazy column UPDATE: {}", lazyUpdateSql.get(i));
+            jdbc.update(lazyUpdateSql.get(i), new SqlParameterValue(layout.lazySqlTypes[i], v.get()), id);
+            v.markClean();
+        }
+    }
+
+    /** у record'а версия в объекте не меняется: для следующего update его нужно перечитать */
+    private void bumpVersion(Object entity) throws IllegalAccessException {
+        if (entity.getClass().isRecord()) return;
+        Field vf = layout.versionField;
+        vf.set(entity, ColumnLayout.nextVersion(vf.get(entity), vf.getType()));
     }
 }
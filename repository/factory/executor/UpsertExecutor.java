@@ -0,0 +1,235 @@
+package com.db.kurs.orm.repository.factory.executor;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.repository.LazyValue;
+import com.db.kurs.orm.repository.OptimisticLockException;
+import com.db.kurs.orm.repository.UpsertResult;
+import com.db.kurs.orm.repository.factory.SqlDialect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * saveAll: батчевый upsert коллекции сущностей.
+ * Сущности без id (null, у примитивного id — 0) вставляются обычным батчевым INSERT, сущности с id —
+ * INSERT ... ON CONFLICT (PostgreSQL) или стандартным MERGE (H2 и прочие). Из нескольких сущностей
+ * с одним id пишется и учитывается в UpsertResult только последняя.
+ * Перед каждым чанком upsert'а выполняется один SELECT id ... IN (...), чтобы посчитать inserted/updated.
+ * При @Version существующая строка обновляется, только если её версия равна версии сущности
+ * (версия в SET не берётся из сущности, а увеличивается: v = v + 1), как в UpdateExecutor;
+ * строки с другой версией не меняются и перечисляются в OptimisticLockException после всех чанков.
+ * Ленивые колонки пишутся после upsert'а отдельным батчем UPDATE на колонку: новой строке —
+ * любое заданное значение (как в InsertExecutor), существующей — только изменённое через
+ * LazyValue.of() / set(). Сущности без id получают их прямо в INSERT.
+ */
+@Slf4j
+public class UpsertExecutor implements QueryExecutor {
+    private final JdbcTemplate jdbc;
+    private final Field idField;
+    private final Class<?> idType;
+    private final ColumnLayout layout;
+    private final int batchSize;
+
+    private final String insertSql;
+    private final String upsertSql;
+    private final String probeSql;      // SELECT id FROM t WHERE id IN (%s)
+    private final int[] insertTypes;
+    private final int[] upsertTypes;
+    private final List<String> lazyUpdateSql = new ArrayList<>();   // UPDATE t SET lazy = ? WHERE id = ?
+
+    /**
+     * @param jdbc         JdbcTemplate
+     * @param entityMapper EntityMapper (для getFields)
+     * @param tableName    имя таблицы из @Table
+     * @param entityType   класс-сущность
+     * @param idFieldName  имя поля в entity, помеченного @Id
+     * @param idColumn     имя колонки в БД для этого @Id
+     * @param dialect      диалект для upsert
+     * @param batchSize    размер JDBC-батча / IN-списка
+     */
+    public UpsertExecutor(JdbcTemplate jdbc,
+                          EntityMapper entityMapper,
+                          String tableName,
+                          Class<?> entityType,
+                          String idFieldName,
+                          String idColumn,
+                          SqlDialect dialect,
+                          int batchSize) {
+        this.jdbc = jdbc;
+        this.batchSize = batchSize;
+        try {
+            this.idField = entityType.getDeclaredField(idFieldName);
+            idField.setAccessible(true);
+        } catch (NoSuchFieldException ex) {
+            throw new RepositoryException("No @Id field '" + idFieldName + "' in " + entityType.getName());
+        }
+        this.idType = ClassUtils.resolvePrimitiveIfNecessary(idField.getType());
+        this.layout = new ColumnLayout(entityMapper, entityType);
+
+        List<String> cols = layout.columnNames;
+        List<String> insertCols = layout.insertColumnNames();
+        this.insertSql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName,
+                String.join(", ", insertCols), String.join(", ", Collections.nCopies(insertCols.size(), "?")));
+        this.insertTypes = layout.insertSqlTypes();
+
+        // id + те же колонки, что у UPDATE; ленивые колонки пишет writeLazy отдельными UPDATE
+        // (LOB-параметры в MERGE ... USING (VALUES ...) поддерживаются не всеми БД)
+        List<String> all = new ArrayList<>();
+        all.add(idColumn);
+        all.addAll(cols);
+        String allCols = String.join(", ", all);
+        String marks   = String.join(", ", Collections.nCopies(all.size(), "?"));
+
+        // версия в SET не копируется из сущности: v = t.v + 1 при совпадении t.v с версией сущности
+        String versionColumn = layout.versionIndex >= 0 ? cols.get(layout.versionIndex) : null;
+        List<String> setCols = new ArrayList<>(cols);
+        if (versionColumn != null) setCols.remove(versionColumn);
+        if (dialect.supportsOnConflict()) {
+            List<String> set = new ArrayList<>();
+            for (String c : setCols) set.add(c + " = EXCLUDED." + c);
+            if (versionColumn != null) set.add(versionColumn + " = t." + versionColumn + " + 1");
+            this.upsertSql = String.format("INSERT INTO %s AS t (%s) VALUES (%s) ON CONFLICT (%s) DO %s",
+                    tableName, allCols, marks, idColumn,
+                    set.isEmpty() ? "NOTHING" : "UPDATE SET " + String.join(", ", set)
+                            + (versionColumn == null ? ""
+                                : " WHERE t." + versionColumn + " = EXCLUDED." + versionColumn));
+        } else {
+            List<String> set = new ArrayList<>();
+            for (String c : setCols) set.add(c + " = s." + c);
+            if (versionColumn != null) set.add(versionColumn + " = t." + versionColumn + " + 1");
+            String src = all.stream().map(c -> "s." + c).collect(Collectors.joining(", "));
+            this.upsertSql = String.format(
+                    "MERGE INTO %s t USING (VALUES (%s)) AS s (%s) ON t.%s = s.%s"
+                            + "%s WHEN NOT MATCHED THEN INSERT (%s) VALUES (%s)",
+                    tableName, marks, allCols, idColumn, idColumn,
+                    set.isEmpty() ? "" : " WHEN MATCHED"
+                            + (versionColumn == null ? "" : " AND t." + versionColumn + " = s." + versionColumn)
+                            + " THEN UPDATE SET " + String.join(", ", set),
+                    allCols, src);
+        }
+        this.upsertTypes = new int[layout.sqlTypes.length + 1];
+        upsertTypes[0] = ColumnLayout.mapJavaTypeToSqlType(idField.getType());
+        System.arraycopy(layout.sqlTypes, 0, upsertTypes, 1, layout.sqlTypes.length);
+        for (String c : layout.lazyColumnNames) {
+            lazyUpdateSql.add(String.format("UPDATE %s SET %s = ? WHERE %s = ?", tableName, c, idColumn));
+        }
+
+        this.probeSql = "SELECT " + idColumn + " FROM " + tableName + " WHERE " + idColumn + " IN (%s)";
+        log.debug("Prepared UPSERT SQL: {}", upsertSql);
+    }
+
+    @Override
+    public Object execute(Object[] args) {
+        Collection<?> entities = (Collection<?>) args[0];
+        if (entities == null || entities.isEmpty()) return new UpsertResult(0, 0);
+        try {
+            List<Object> inserts = new ArrayList<>();
+            // один id — одна строка: побеждает последняя сущность, как при записи по очереди
+            Map<Object, Object> byId = new LinkedHashMap<>();
+            for (Object entity : entities) {
+                layout.initVersion(entity);
+                Object id = idField.get(entity);
+                if (ColumnLayout.isUnsetId(idField, id)) {
+                    inserts.add(entity);
+                } else {
+                    byId.put(id, entity);
+                }
+            }
+            List<Object> upserts = new ArrayList<>(byId.values());
+
+            long inserted = 0, updated = 0;
+            List<Object> conflicts = new ArrayList<>();
+            for (int from = 0; from < upserts.size(); from += batchSize) {
+                List<Object> chunk = upserts.subList(from, Math.min(from + batchSize, upserts.size()));
+                List<Object> chunkIds = new ArrayList<>(chunk.size());
+                for (Object entity : chunk) chunkIds.add(idField.get(entity));
+                Set<Object> existing = new HashSet<>(jdbc.queryForList(
+                        String.format(probeSql, String.join(",", Collections.nCopies(chunkIds.size(), "?"))),
+                        idType, chunkIds.toArray()));
+
+                List<Object[]> rows = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    List<Object> values = layout.values(chunk.get(i));
+                    values.add(0, chunkIds.get(i));
+                    rows.add(values.toArray());
+                }
+                log.debug("Executing UPSERT batch of {} rows", rows.size());
+                int[] counts = jdbc.batchUpdate(upsertSql, rows, upsertTypes);
+
+                List<Object> insertedEntities = new ArrayList<>();
+                List<Object> updatedEntities = new ArrayList<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    Object entity = chunk.get(i);
+                    if (!existing.contains(chunkIds.get(i))) {
+                        inserted++;
+                        insertedEntities.add(entity);
+                    } else if (layout.versionField != null && i < counts.length && counts[i] == 0) {
+                        // SUCCESS_NO_INFO (-2): драйвер не сообщил число строк, считаем успешным
+                        conflicts.add(chunkIds.get(i));
+                    } else {
+                        updated++;
+                        if (layout.versionField != null) bumpVersion(entity);
+                        updatedEntities.add(entity);
+                    }
+                }
+                writeLazy(insertedEntities, false);
+                writeLazy(updatedEntities, true);
+            }
+            for (int from = 0; from < inserts.size(); from += batchSize) {
+                List<Object> chunk = inserts.subList(from, Math.min(from + batchSize, inserts.size()));
+                List<Object[]> rows = new ArrayList<>(chunk.size());
+                for (Object entity : chunk) rows.add(layout.insertValues(entity).toArray());
+                log.debug("Executing INSERT batch of {} rows", rows.size());
+                jdbc.batchUpdate(insertSql, rows, insertTypes);
+                for (Object entity : chunk) layout.markLazyClean(entity);
+                inserted += rows.size();
+            }
+            if (!conflicts.isEmpty()) {
+                throw new OptimisticLockException(idField.getDeclaringClass(), conflicts);
+            }
+            return new UpsertResult(inserted, updated);
+        } catch (IllegalAccessException ex) {
+            throw new RepositoryException("Failed to read entity for UPSERT: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Ленивые колонки строк upsert'а: батч UPDATE на колонку.
+     * @param onlyDirty true — существующие строки, пишутся только изменённые значения (как UpdateExecutor);
+     *                  false — вставленные строки, пишется любое заданное значение (как InsertExecutor)
+     */
+    private void writeLazy(List<Object> entities, boolean onlyDirty) throws IllegalAccessException {
+        for (int c = 0; c < layout.lazyFields.size(); c++) {
+            List<Object[]> rows = new ArrayList<>();
+            List<LazyValue<?>> written = new ArrayList<>();
+            for (Object entity : entities) {
+                LazyValue<?> v = (LazyValue<?>) layout.lazyFields.get(c).get(entity);
+                if (v == null || (onlyDirty && !v.isDirty())) continue;
+                rows.add(new Object[]{v.get(), idField.get(entity)});
+                written.add(v);
+            }
+            if (rows.isEmpty()) continue;
+            log.debug("Executing lazy column UPDATE batch of {} rows: {}", rows.size(), lazyUpdateSql.get(c));
+            jdbc.batchUpdate(lazyUpdateSql.get(c), rows,
+                    new int[]{layout.lazySqlTypes[c], ColumnLayout.mapJavaTypeToSqlType(idField.getType())});
+            written.forEach(LazyValue::markClean);
+        }
+    }
+
+    /** после обновления строки версия в сущности совпадает с версией в БД (у record'а не меняется) */
+    private void bumpVersion(Object entity) {
+        if (entity.getClass().isRecord()) return;
+        Field vf = layout.versionField;
+        try {
+            vf.set(entity, ColumnLayout.nextVersion(vf.get(entity), vf.getType()));
+        } catch (IllegalAccessException ex) {
+            throw new RepositoryException("Cannot update @Version of " + entity.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.db.kurs.orm.repository.factory.jdbc;
+
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.repository.Deadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.datasource.ConnectionHandle;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Одно соединение на область: пока область открыта, все запросы JdbcTemplate к этому DataSource
+ * в текущем потоке идут через одно соединение, взятое из пула при первом запросе (привязка
+ * ConnectionHolder, как у транзакции, но без неё: autoCommit не меняется).
+ * PreparedStatement'ы с одинаковым SQL внутри области переиспользуются: close() от JdbcTemplate
+ * лишь сбрасывает параметры и возвращает statement в LRU-кэш области (до statementCacheSize).
+ * <p>
+ * Репозиторий открывает область на каждый вызов; вызывающий код может открыть её сам
+ * (try-with-resources), чтобы несколько вызовов делили соединение и кэш statement'ов.
+ * Вложенные области присоединяются к внешней. Внутри транзакции Spring область ничего не делает:
+ * соединение и так одно.
+ * <p>
+ * При текущем Deadline его остаток становится таймаутом привязки: JdbcTemplate ставит его
+ * query timeout'ом каждому запросу и не начинает запрос после срока (как с таймаутом транзакции).
+ * Выполняемые запросы области отменяет StatementWatchdog — по сроку и при прерывании потока.
+ */
+@Slf4j
+public final class ConnectionScope implements AutoCloseable {
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private static final ConnectionScope NOOP = new ConnectionScope(null, 0);
+
+    private final DataSource dataSource;
+    private final int statementCacheSize;
+    private final ScopeHolder holder;
+    private final Map<String, ScopedStatement> statements;
+    private Connection target;     // взятое из пула соединение (null — ещё не понадобилось)
+    private Connection proxy;
+    private int depth = 1;
+    private final Deque<Date> outerDeadlines = new ArrayDeque<>();   // сроки внешних уровней
+    private int prepared;
+    private int reused;
+
+    private ConnectionScope(DataSource dataSource, int statementCacheSize) {
+        this.dataSource = dataSource;
+        this.statementCacheSize = statementCacheSize;
+        this.holder = dataSource == null ? null : new ScopeHolder(this);
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** открывает область (или присоединяется к открытой) с кэшем на DEFAULT_STATEMENT_CACHE_SIZE */
+    public static ConnectionScope open(DataSource dataSource) {
+        return open(dataSource, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /** @param statementCacheSize statement'ов в кэше области; 0 — только общее соединение */
+    public static ConnectionScope open(DataSource dataSource, int statementCacheSize) {
+        if (dataSource == null) return NOOP;
+        Object bound = TransactionSynchronizationManager.getResource(dataSource);
+        if (bound instanceof ScopeHolder h) {
+            h.scope.depth++;
+            h.scope.outerDeadlines.push(h.hasTimeout() ? h.getDeadline() : NO_DEADLINE);
+            h.scope.applyDeadline();
+            return h.scope;
+        }
+        if (bound != null) return NOOP;   // транзакция или чужая привязка
+        ConnectionScope scope = new ConnectionScope(dataSource, statementCacheSize);
+        scope.applyDeadline();
+        TransactionSynchronizationManager.bindResource(dataSource, scope.holder);
+        return scope;
+    }
+
+    /** привязка к DataSource — область, а не транзакция */
+    static boolean isScopeBinding(Object resource) {
+        return resource instanceof ScopeHolder;
+    }
+
+    private static final Date NO_DEADLINE = new Date(Long.MIN_VALUE);
+
+    /** остаток текущего Deadline — таймаут привязки (его читает DataSourceUtils.applyTimeout) */
+    private void applyDeadline() {
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            holder.setTimeoutInMillis(deadline.remainingMillis());
+        } else if (holder.hasTimeout()) {
+            holder.clear();
+        }
+    }
+
+    /**
+     * До close() запросы текущего потока не привязаны к его вызову: без Deadline (и таймаута
+     * открытой области) и без отмены при прерывании потока. Для общей работы нескольких вызовов,
+     * например пачки findById; откройте внутри вложенную область, чтобы снять её таймаут.
+     */
+    public static Deadline.Scope detach() {
+        Deadline.Scope deadline = Deadline.suspend();
+        boolean previous = StatementWatchdog.setDetached(true);
+        return () -> {
+            StatementWatchdog.setDetached(previous);
+            deadline.close();
+        };
+    }
+
+    /** executor, каждый вызов которого выполняется в своей области */
+    public static QueryExecutor around(DataSource dataSource, int statementCacheSize, QueryExecutor executor) {
+        return args -> {
+            ConnectionScope scope = open(dataSource, statementCacheSize);
+            try {
+                return executor.execute(args);
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (this == NOOP) return;
+        if (--depth > 0) {
+            Date outer = outerDeadlines.pop();
+            if (outer == NO_DEADLINE) holder.clear();
+            else holder.setTimeoutInMillis(outer.getTime() - System.currentTimeMillis());
+            return;
+        }
+        TransactionSynchronizationManager.unbindResource(dataSource);
+        for (ScopedStatement s : statements.values()) s.closeQuietly();
+        statements.clear();
+        if (target != null) {
+            log.debug("Connection scope closed: {} statements prepared, {} reused", prepared, reused);
+            try {
+                target.close();
+            } catch (SQLException ex) {
+                log.debug("Failed to close scoped connection: {}", ex.toString());
+            }
+            target = null;
+        }
+    }
+
+    private Connection connection() {
+        if (proxy == null) {
+            try {
+                target = dataSource.getConnection();
+            } catch (SQLException ex) {
+                throw new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection", ex);
+            }
+            proxy = (Connection) Proxy.newProxyInstance(ConnectionScope.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionInvocationHandler());
+        }
+        return proxy;
+    }
+
+    /** привязка области: соединение берётся при первом запросе и не возвращается до close() */
+    private static final class ScopeHolder extends ConnectionHolder {
+        final ConnectionScope scope;
+
+        ScopeHolder(ConnectionScope scope) {
+            super(new ConnectionHandle() {
+                @Override
+                public Connection getConnection() {
+                    return scope.connection();
+                }
+
+                @Override
+                public void releaseConnection(Connection con) {
+                    // соединение отдаёт пулу ConnectionScope.close()
+                }
+            });
+            this.scope = scope;
+        }
+    }
+
+    /** соединение области: close() игнорируется, prepareStatement идёт через кэш */
+    private final class ConnectionInvocationHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    return null;
+                case "isClosed":
+                    return target == null || target.isClosed();
+                case "equals":
+                    return p == args[0];
+                case "hashCode":
+                    return System.identityHashCode(p);
+                case "prepareStatement":
+                    return prepare(method, args);
+                case "createStatement":
+                    return new ScopedStatement((Statement) invokeTarget(method, args), Statement.class, null).proxy;
+                case "prepareCall":
+                    return new ScopedStatement((Statement) invokeTarget(method, args), CallableStatement.class, null).proxy;
+                default:
+                    return invokeTarget(method, args);
+            }
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        }
+
+        private Object prepare(Method method, Object[] args) throws Throwable {
+            String key = statementCacheSize > 0 ? Arrays.deepToString(args) : null;
+            ScopedStatement cached = key == null ? null : statements.get(key);
+            if (cached != null && !cached.inUse && cached.target.isClosed()) {
+                statements.remove(key);
+                cached = null;
+            }
+            if (cached != null && !cached.inUse) {
+                cached.inUse = true;
+                reused++;
+                return cached.proxy;
+            }
+            Statement ps = (Statement) invokeTarget(method, args);
+            prepared++;
+            // без кэша или тот же SQL ещё открыт (вложенный курсор) — обычный statement
+            if (key == null || cached != null) return new ScopedStatement(ps, PreparedStatement.class, null).proxy;
+            ScopedStatement created = new ScopedStatement(ps, PreparedStatement.class, key);
+            statements.put(key, created);
+            evict();
+            return created.proxy;
+        }
+
+        /** старейшие свободные statement'ы сверх лимита закрываются */
+        private void evict() {
+            Iterator<ScopedStatement> it = statements.values().iterator();
+            while (statements.size() > statementCacheSize && it.hasNext()) {
+                ScopedStatement s = it.next();
+                if (s.inUse) continue;
+                s.closeQuietly();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Statement области: выполнение видно StatementWatchdog'у (отмена по сроку и прерыванию),
+     * close() у кэшируемого возвращает его в кэш с исходными настройками.
+     */
+    private final class ScopedStatement implements InvocationHandler {
+        final Statement target;
+        final Statement proxy;
+        final String cacheKey;   // null — не кэшируется
+        final int fetchSize;
+        final int maxRows;
+        final int queryTimeout;
+        boolean inUse = true;
+        boolean evicted;
+
+        ScopedStatement(Statement target, Class<? extends Statement> type, String cacheKey) throws SQLException {
+            this.target = target;
+            this.cacheKey = cacheKey;
+            this.fetchSize = cacheKey == null ? 0 : target.getFetchSize();
+            this.maxRows = cacheKey == null ? 0 : target.getMaxRows();
+            this.queryTimeout = cacheKey == null ? 0 : target.getQueryTimeout();
+            this.proxy = (Statement) Proxy.newProxyInstance(ConnectionScope.class.getClassLoader(),
+                    new Class<?>[]{type}, this);
+        }
+
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (cacheKey == null) target.close(); else release();
+                    return null;
+                case "getConnection":
+                    return ConnectionScope.this.proxy;
+                case "equals":
+                    return p == args[0];
+                case "hashCode":
+                    return System.identityHashCode(p);
+                default:
+                    break;
+            }
+            boolean execute = name.startsWith("execute");
+            if (execute) StatementWatchdog.begin(target);
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            } finally {
+                if (execute) StatementWatchdog.end(target);
+            }
+        }
+
+        private void release() throws SQLException {
+            if (!inUse) return;
+            inUse = false;
+            if (evicted || target.isClosed()) return;
+            ((PreparedStatement) target).clearParameters();
+            if (target.getFetchSize() != fetchSize) target.setFetchSize(fetchSize);
+            if (target.getMaxRows() != maxRows) target.setMaxRows(maxRows);
+            if (target.getQueryTimeout() != queryTimeout) target.setQueryTimeout(queryTimeout);
+        }
+
+        void closeQuietly() {
+            evicted = true;
+            try {
+                target.close();
+            } catch (SQLException ex) {
+                log.debug("Failed to close cached statement: {}", ex.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.db.kurs.orm.repository.factory.jdbc;
+
+import com.db.kurs.orm.repository.factory.InvocationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.*;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * JdbcTemplate, через который executor'ы выполняют запросы, когда включены наблюдаемость и
+ * ограничения на уровне отдельных запросов. Перехватывает общие точки входа JdbcTemplate
+ * (все query/update/batchUpdate сходятся в них), не меняя DataSource, поэтому участие
+ * в транзакциях Spring остаётся прежним.
+ */
+public class InstrumentedJdbcTemplate extends JdbcTemplate {
+    private final SlowQueryLog slowQueryLog;
+
+    /**
+     * @param source       исходный JdbcTemplate (DataSource и настройки копируются)
+     * @param slowQueryLog журнал медленных запросов
+     */
+    public InstrumentedJdbcTemplate(JdbcTemplate source, SlowQueryLog slowQueryLog) {
+        super(source.getDataSource());
+        setExceptionTranslator(source.getExceptionTranslator());
+        setFetchSize(source.getFetchSize());
+        setMaxRows(source.getMaxRows());
+        setQueryTimeout(source.getQueryTimeout());
+        setIgnoreWarnings(source.isIgnoreWarnings());
+        setSkipResultsProcessing(source.isSkipResultsProcessing());
+        setSkipUndeclaredResults(source.isSkipUndeclaredResults());
+        setResultsMapCaseInsensitive(source.isResultsMapCaseInsensitive());
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /** Аргументы запроса, доступные после выполнения (для журнала) */
+    private static final class ArgsSetter implements PreparedStatementSetter, ParameterDisposer {
+        final Object[] args;
+        final PreparedStatementSetter delegate;
+
+        ArgsSetter(Object[] args, PreparedStatementSetter delegate) {
+            this.args = args;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps) throws SQLException {
+            delegate.setValues(ps);
+        }
+
+        @Override
+        public void cleanupParameters() {
+            if (delegate instanceof ParameterDisposer pd) pd.cleanupParameters();
+        }
+    }
+
+    @Override
+    protected PreparedStatementSetter newArgPreparedStatementSetter(Object[] args) {
+        return new ArgsSetter(args, super.newArgPreparedStatementSetter(args));
+    }
+
+    @Override
+    protected PreparedStatementSetter newArgTypePreparedStatementSetter(Object[] args, int[] argTypes) {
+        return new ArgsSetter(args, super.newArgTypePreparedStatementSetter(args, argTypes));
+    }
+
+    @Override
+    public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse)
+            throws DataAccessException {
+        return timed(sqlOf(psc), argsOf(pss), () -> super.query(psc, pss, rse));
+    }
+
+    @Override
+    public <T> T query(String sql, ResultSetExtractor<T> rse) throws DataAccessException {
+        return timed(sql, null, () -> super.query(sql, rse));
+    }
+
+    @Override
+    protected int update(PreparedStatementCreator psc, PreparedStatementSetter pss) throws DataAccessException {
+        return timed(sqlOf(psc), argsOf(pss), () -> super.update(psc, pss));
+    }
+
+    @Override
+    public int update(String sql) throws DataAccessException {
+        return timed(sql, null, () -> super.update(sql));
+    }
+
+    @Override
+    public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) throws DataAccessException {
+        return timed(sql, null, () -> super.batchUpdate(sql, pss));
+    }
+
+    private <T> T timed(String sql, Object[] args, Supplier<T> call) {
+        long start = System.nanoTime();
+        T result = call.get();
+        slowQueryLog.record(sql, args, System.nanoTime() - start, rowsOf(result),
+                InvocationContext.currentMethod(), getDataSource());
+        return result;
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Collection<?> c) return c.size();
+        if (result instanceof Integer n) return n;
+        if (result instanceof int[] counts) {
+            long sum = 0;
+            for (int n : counts) sum += Math.max(n, 0);
+            return sum;
+        }
+        return -1;
+    }
+
+    private static String sqlOf(Object psc) {
+        return psc instanceof SqlProvider sp ? sp.getSql() : String.valueOf(psc);
+    }
+
+    private static Object[] argsOf(PreparedStatementSetter pss) {
+        return pss instanceof ArgsSetter a ? a.args : null;
+    }
+}
@@ -0,0 +1,123 @@
+package com.db.kurs.orm.repository.factory.jdbc;
+
+import com.db.kurs.orm.mapper.QueryExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Маршрутизация чтения на реплики: читающие методы выполняются на одной из реплик
+ * (по кругу или на наименее загруженной), пишущие — на primary.
+ * Чтение остаётся на primary, если поток внутри транзакции primary
+ * или недавно писал (окно read-your-writes).
+ */
+public class ReplicaRouter {
+
+    public enum Balancing { ROUND_ROBIN, LEAST_LOADED }
+
+    /** время последней записи потока, System.nanoTime() */
+    private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+    private final JdbcTemplate primary;
+    private final List<JdbcTemplate> replicas = new ArrayList<>();
+    private final Balancing balancing;
+    private final long readYourWritesNanos;
+    private final AtomicLong roundRobin = new AtomicLong();
+    private final AtomicInteger[] inFlight;   // запросы в работе по каждой реплике
+
+    /**
+     * @param primary              JdbcTemplate primary
+     * @param replicaSources       DataSource'ы реплик
+     * @param balancing            выбор реплики
+     * @param readYourWritesMillis сколько после записи поток читает с primary; 0 — не закреплять
+     */
+    public ReplicaRouter(JdbcTemplate primary,
+                         List<DataSource> replicaSources,
+                         Balancing balancing,
+                         long readYourWritesMillis) {
+        this.primary = primary;
+        for (DataSource ds : replicaSources) {
+            JdbcTemplate t = new JdbcTemplate(ds);
+            t.setFetchSize(primary.getFetchSize());
+            t.setMaxRows(primary.getMaxRows());
+            t.setQueryTimeout(primary.getQueryTimeout());
+            replicas.add(t);
+        }
+        this.inFlight = new AtomicInteger[replicas.size()];
+        for (int i = 0; i < inFlight.length; i++) inFlight[i] = new AtomicInteger();
+        this.balancing = balancing;
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+    }
+
+    public JdbcTemplate getPrimary() {
+        return primary;
+    }
+
+    public List<JdbcTemplate> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @param onPrimary  executor метода поверх primary
+     * @param onReplicas executor'ы того же метода поверх реплик, по индексу getReplicas()
+     */
+    public QueryExecutor reads(QueryExecutor onPrimary, List<QueryExecutor> onReplicas) {
+        return args -> {
+            if (onReplicas.isEmpty() || pinnedToPrimary()) {
+                return onPrimary.execute(args);
+            }
+            int idx = pick();
+            inFlight[idx].incrementAndGet();
+            try {
+                return onReplicas.get(idx).execute(args);
+            } finally {
+                inFlight[idx].decrementAndGet();
+            }
+        };
+    }
+
+    public QueryExecutor writes(QueryExecutor onPrimary) {
+        return args -> {
+            try {
+                return onPrimary.execute(args);
+            } finally {
+                wrote();
+            }
+        };
+    }
+
+    /** отмечает запись потока (в т.ч. отложенную) для окна read-your-writes */
+    public void wrote() {
+        if (readYourWritesNanos > 0) LAST_WRITE.set(System.nanoTime());
+    }
+
+    private boolean pinnedToPrimary() {
+        DataSource ds = primary.getDataSource();
+        Object bound = ds == null ? null : TransactionSynchronizationManager.getResource(ds);
+        if (bound != null && !ConnectionScope.isScopeBinding(bound)) {
+            return true;   // транзакция primary; открытая область ConnectionScope не закрепляет
+        }
+        Long last = LAST_WRITE.get();
+        if (last == null) return false;
+        if (System.nanoTime() - last < readYourWritesNanos) return true;
+        LAST_WRITE.remove();
+        return false;
+    }
+
+    private int pick() {
+        if (balancing == Balancing.LEAST_LOADED) {
+            int best = 0;
+            for (int i = 1; i < inFlight.length; i++) {
+                if (inFlight[i].get() < inFlight[best].get()) best = i;
+            }
+            return best;
+        }
+        return (int) Math.floorMod(roundRobin.getAndIncrement(), (long) inFlight.length);
+    }
+}
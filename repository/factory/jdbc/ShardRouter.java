@@ -0,0 +1,335 @@
+package com.db.kurs.orm.repository.factory.jdbc;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.annotation.ShardKey;
+import com.db.kurs.orm.mapper.QueryExecutor;
+import com.db.kurs.orm.metadata.EntityMetadata;
+import com.db.kurs.orm.metadata.RelationshipMetadata;
+import com.db.kurs.orm.repository.Deadline;
+import com.db.kurs.orm.repository.EntityGraph;
+import com.db.kurs.orm.repository.UpsertResult;
+import com.db.kurs.orm.repository.factory.InvocationContext;
+import com.db.kurs.orm.repository.factory.executor.ColumnLayout;
+import com.db.kurs.orm.repository.factory.executor.FindAllByIdExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Горизонтальное шардирование по хэшу ключа (@ShardKey, иначе @Id).
+ * Операции с одной сущностью или id идут на её шард, остальные (findAll, countAll, @Query...)
+ * выполняются на всех шардах параллельно, результаты сливаются.
+ * Связанные строки должны лежать на шарде корня: загрузка связей идёт executor'ом того же шарда,
+ * поэтому batch-ключи связей сами группируются по шардам.
+ * <p>
+ * Ключ должен быть известен до вставки: id, сгенерированный БД шарда, не хэшируется обратно
+ * в этот шард. Поэтому @ShardKey — записываемая колонка (@Column или FK @ManyToOne),
+ * а при ключе-@Id он задаётся приложением и пишется в INSERT (isIdAssigned()).
+ */
+public class ShardRouter {
+    private final List<JdbcTemplate> shards;
+    private final Field shardKeyField;
+    private final boolean keyIsId;
+    private final Field keyTargetIdField;   // @Id цели, если ключ — связь @ManyToOne; иначе null
+    private final Field idField;   // null — составной / без @Id
+    private final ExecutorService pool;
+
+    /**
+     * @param shards     JdbcTemplate каждого шарда; порядок задаёт номер шарда
+     * @param entityType класс-сущность репозитория
+     */
+    public ShardRouter(List<JdbcTemplate> shards, Class<?> entityType) {
+        if (shards.isEmpty()) throw new RepositoryException("No shards configured");
+        this.shards = List.copyOf(shards);
+
+        EntityMetadata meta = new EntityMetadata(entityType);
+        Field key = null;
+        for (Field f : entityType.getDeclaredFields()) {
+            if (f.isAnnotationPresent(ShardKey.class)) {
+                f.setAccessible(true);
+                key = f;
+            }
+        }
+        if (key == null) {
+            if (meta.idFields.isEmpty()) {
+                throw new RepositoryException("No @ShardKey or @Id field in " + entityType.getName());
+            }
+            key = meta.idFields.get(0);
+        }
+        this.shardKeyField = key;
+        this.keyIsId = meta.idFields.contains(key);
+        if (keyIsId && meta.idFields.size() != 1) {
+            throw new RepositoryException("Sharding by a composite @Id is not supported: " + entityType.getName()
+                    + "; mark a column with @ShardKey");
+        }
+        boolean relation = !keyIsId && isOwningRelation(meta, key);
+        if (!keyIsId && !relation && !meta.columns.containsValue(key)) {
+            throw new RepositoryException("@ShardKey " + key.getName() + " of " + entityType.getName()
+                    + " must be a @Column or @ManyToOne field written by INSERT");
+        }
+        if (relation) {
+            EntityMetadata target = new EntityMetadata(key.getType());
+            if (target.idFields.size() != 1) {
+                throw new RepositoryException("@ShardKey relation " + key.getName() + " needs a target with a single @Id");
+            }
+            this.keyTargetIdField = target.idFields.get(0);
+        } else {
+            this.keyTargetIdField = null;
+        }
+        this.idField = meta.idFields.size() == 1 ? meta.idFields.get(0) : null;
+        this.pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "orm-shard-" + entityType.getSimpleName());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static boolean isOwningRelation(EntityMetadata meta, Field field) {
+        for (RelationshipMetadata rel : meta.relations) {
+            if (rel.field.equals(field) && (rel.type == RelationshipMetadata.RelationType.MANY_TO_ONE
+                    || (rel.type == RelationshipMetadata.RelationType.ONE_TO_ONE
+                        && (rel.mappedBy == null || rel.mappedBy.isEmpty())))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<JdbcTemplate> getShards() {
+        return shards;
+    }
+
+    /** ключ шарда — @Id: его задаёт приложение, и INSERT должен его писать */
+    public boolean isIdAssigned() {
+        return keyIsId;
+    }
+
+    /** номер шарда для значения ключа */
+    public int shardOf(Object key) {
+        if (key == null) throw new RepositoryException("Shard key is null");
+        long h = key instanceof Number n && !(key instanceof Double || key instanceof Float)
+                ? n.longValue()
+                : key.hashCode();
+        // перемешивание (финализатор murmur3), чтобы последовательные id расходились по шардам
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) Math.floorMod(h, (long) shards.size());
+    }
+
+    /**
+     * @param method   метод репозитория
+     * @param perShard executor'ы метода по каждому шарду, по индексу getShards()
+     */
+    @SuppressWarnings("unchecked")
+    public QueryExecutor route(Method method, List<QueryExecutor> perShard) {
+        return switch (method.getName()) {
+            case "create", "update" -> args -> perShard.get(shardOf(keyOf(args[0]))).execute(args);
+            case "findById", "existsById", "delete" -> keyIsId
+                    ? args -> perShard.get(shardOf(args[0])).execute(args)
+                    : args -> scatter(perShard, args, method);
+            case "saveAll" -> args -> {
+                Map<Integer, List<Object>> groups = new TreeMap<>();
+                for (Object entity : (Collection<?>) args[0]) {
+                    groups.computeIfAbsent(shardOf(keyOf(entity)), k -> new ArrayList<>()).add(entity);
+                }
+                return gather(perShard, groups, args, 0, method);
+            };
+            case "deleteAllById" -> keyIsId
+                    ? args -> {
+                        Map<Integer, List<Object>> groups = new TreeMap<>();
+                        for (Object id : (Collection<?>) args[0]) {
+                            groups.computeIfAbsent(shardOf(id), k -> new ArrayList<>()).add(id);
+                        }
+                        return gather(perShard, groups, args, 0, method);
+                    }
+                    : args -> scatter(perShard, args, method);
+            case "findAllById" -> args -> {
+                Object found;
+                if (keyIsId) {
+                    Map<Integer, List<Object>> groups = new TreeMap<>();
+                    for (Object id : (Collection<?>) args[0]) {
+                        if (id != null) groups.computeIfAbsent(shardOf(id), k -> new ArrayList<>()).add(id);
+                    }
+                    found = gather(perShard, groups, args, 0, method);
+                } else {
+                    found = scatter(perShard, args, method);
+                }
+                // каждый шард упорядочил свою часть — общий порядок восстанавливается по входным id
+                if (args.length > 1 && Boolean.TRUE.equals(args[1]) && idField != null) {
+                    FindAllByIdExecutor.sortByIds((List<Object>) found, (Collection<?>) args[0], idField);
+                }
+                return found;
+            };
+            case "countRelation" -> keyIsId
+                    ? args -> {
+                        Map<Integer, List<Object>> groups = new TreeMap<>();
+                        for (Object id : (Collection<?>) args[1]) {
+                            groups.computeIfAbsent(shardOf(id), k -> new ArrayList<>()).add(id);
+                        }
+                        return gather(perShard, groups, args, 1, method);
+                    }
+                    : args -> scatter(perShard, args, method);
+            case "bulkLoad" -> throw new RepositoryException("bulkLoad is not supported on sharded repositories");
+            default -> args -> scatter(perShard, args, method);
+        };
+    }
+
+    /** ключ сущности; не заданный ключ — ошибка: БД шарда не может его выбрать */
+    private Object keyOf(Object entity) {
+        Object key;
+        try {
+            key = shardKeyField.get(entity);
+            // ключ-связь хэшируется по id связанной сущности (как FK в строке)
+            if (key != null && keyTargetIdField != null) key = keyTargetIdField.get(key);
+        } catch (IllegalAccessException ex) {
+            throw new RepositoryException("Cannot read shard key " + shardKeyField.getName());
+        }
+        // ключ-id (свой или цели связи) примитивного типа со значением 0 тоже не присвоен
+        boolean idKey = keyIsId || keyTargetIdField != null;
+        Field keyField = keyTargetIdField != null ? keyTargetIdField : shardKeyField;
+        if (idKey ? ColumnLayout.isUnsetId(keyField, key) : key == null) {
+            throw new RepositoryException("Shard key " + shardKeyField.getName() + " of "
+                    + entity.getClass().getSimpleName() + " must be assigned before it is written");
+        }
+        return key;
+    }
+
+    /** один и тот же вызов на всех шардах */
+    private Object scatter(List<QueryExecutor> perShard, Object[] args, Method method) {
+        List<Callable<Object>> calls = new ArrayList<>();
+        for (QueryExecutor ex : perShard) {
+            calls.add(() -> ex.execute(args));
+        }
+        return merge(invokeAll(calls), method);
+    }
+
+    /** вызов на шардах из groups, в каждом args[collectionArg] заменён своей частью коллекции */
+    private Object gather(List<QueryExecutor> perShard, Map<Integer, List<Object>> groups,
+                         Object[] args, int collectionArg, Method method) {
+        List<Callable<Object>> calls = new ArrayList<>();
+        for (var e : groups.entrySet()) {
+            Object[] shardArgs = args.clone();
+            shardArgs[collectionArg] = e.getValue();
+            QueryExecutor ex = perShard.get(e.getKey());
+            calls.add(() -> ex.execute(shardArgs));
+        }
+        return merge(invokeAll(calls), method);
+    }
+
+    /** параллельно, с переносом контекста вызова (метод, граф загрузки) в потоки пула */
+    private List<Object> invokeAll(List<Callable<Object>> calls) {
+        if (calls.size() == 1) {
+            try {
+                return Collections.singletonList(calls.get(0).call());
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new RepositoryException("Shard call failed: " + ex.getMessage());
+            }
+        }
+        String method = InvocationContext.currentMethod();
+        EntityGraph graph = EntityGraph.current();
+        Deadline deadline = Deadline.current();
+        List<Future<Object>> futures = new ArrayList<>();
+        for (Callable<Object> call : calls) {
+            futures.add(pool.submit(() -> {
+                String previous = InvocationContext.enter(method);
+                EntityGraph.Scope graphScope = null;
+                Deadline.Scope deadlineScope = null;
+                try {
+                    graphScope = graph != null ? graph.apply() : null;
+                    deadlineScope = deadline != null ? deadline.apply() : null;
+                    return call.call();
+                } finally {
+                    if (deadlineScope != null) deadlineScope.close();
+                    if (graphScope != null) graphScope.close();
+                    InvocationContext.restore(previous);
+                }
+            }));
+        }
+        List<Object> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<Object> f : futures) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException ex) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for shards");
+        } catch (ExecutionException ex) {
+            futures.forEach(f -> f.cancel(true));
+            if (ex.getCause() instanceof RuntimeException re) throw re;
+            throw new RepositoryException("Shard call failed: " + ex.getCause());
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object merge(List<Object> results, Method method) {
+        Class<?> rt = method.getReturnType();
+        if (List.class.isAssignableFrom(rt)) {
+            List<Object> all = new ArrayList<>();
+            for (Object r : results) if (r != null) all.addAll((List<Object>) r);
+            return all;
+        }
+        if (Map.class.isAssignableFrom(rt)) {
+            Map<Object, Object> all = new LinkedHashMap<>();
+            for (Object r : results) {
+                if (r == null) continue;
+                ((Map<Object, Object>) r).forEach((k, v) -> all.merge(k, v, (a, b) ->
+                        a instanceof Long la && b instanceof Long lb ? la + lb : b));
+            }
+            return all;
+        }
+        if (rt == UpsertResult.class) {
+            long inserted = 0, updated = 0;
+            for (Object r : results) {
+                inserted += ((UpsertResult) r).getInserted();
+                updated  += ((UpsertResult) r).getUpdated();
+            }
+            return new UpsertResult(inserted, updated);
+        }
+        if (rt == long[].class) {
+            return results.stream().flatMapToLong(r -> LongStream.of((long[]) r)).toArray();
+        }
+        if (rt == int[].class) {
+            return results.stream().flatMapToInt(r -> IntStream.of((int[]) r)).toArray();
+        }
+        if (rt == double[].class) {
+            return results.stream().flatMapToDouble(r -> DoubleStream.of((double[]) r)).toArray();
+        }
+        if (rt == LongStream.class) {
+            return results.stream().flatMapToLong(r -> (LongStream) r);
+        }
+        if (rt == IntStream.class) {
+            return results.stream().flatMapToInt(r -> (IntStream) r);
+        }
+        if (rt == DoubleStream.class) {
+            return results.stream().flatMapToDouble(r -> (DoubleStream) r);
+        }
+        if (rt == boolean.class || rt == Boolean.class) {
+            return results.stream().anyMatch(Boolean.TRUE::equals);
+        }
+        if (rt == Long.class || rt == long.class) {
+            long sum = 0;
+            for (Object r : results) if (r != null) sum += ((Number) r).longValue();
+            return sum;
+        }
+        if (rt == Integer.class || rt == int.class) {
+            int sum = 0;
+            for (Object r : results) if (r != null) sum += ((Number) r).intValue();
+            return sum;
+        }
+        for (Object r : results) {
+            if (r != null) return r;
+        }
+        return null;
+    }
+}
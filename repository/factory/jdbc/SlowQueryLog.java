@@ -0,0 +1,107 @@
+package com.db.kurs.orm.repository.factory.jdbc;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Журнал медленных запросов: всё, что дольше thresholdMillis, пишется в WARN
+ * с шаблоном SQL, типами параметров (значения — только при logParameterValues), числом строк
+ * и методом репозитория. Для SELECT можно снимать EXPLAIN на отдельном соединении в фоне.
+ * Записи сэмплируются (sampleRate) и ограничены maxPerMinute, поэтому журнал можно держать включённым под нагрузкой.
+ */
+@Slf4j
+@Getter
+@Setter
+public class SlowQueryLog {
+    /** порог длительности запроса, мс */
+    private long thresholdMillis = 500;
+    /** писать ли значения параметров (по умолчанию только типы) */
+    private boolean logParameterValues = false;
+    /** снимать ли EXPLAIN для медленных SELECT */
+    private boolean explain = false;
+    /** доля медленных запросов, попадающих в журнал, 0..1 */
+    private double sampleRate = 1.0;
+    /** не больше стольких записей в минуту */
+    private int maxPerMinute = 60;
+
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicInteger windowCount = new AtomicInteger();
+    private final ExecutorService explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(16),
+            r -> {
+                Thread t = new Thread(r, "orm-slow-query-explain");
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    /**
+     * @param rows число строк (размер результата или update count), -1 если неизвестно
+     */
+    public void record(String sql, Object[] params, long elapsedNanos, long rows,
+                       String method, DataSource dataSource) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (millis < thresholdMillis || !admit()) return;
+
+        String shownParams = params == null ? "[]" : logParameterValues
+                ? Arrays.toString(params)
+                : Arrays.stream(params)
+                        .map(p -> p == null ? "null" : p.getClass().getSimpleName())
+                        .collect(Collectors.joining(", ", "[", "]"));
+        log.warn("Slow query {} ms | method: {} | rows: {} | SQL: {} | params: {}",
+                millis, method, rows, sql, shownParams);
+
+        if (explain && dataSource != null && isSelect(sql)) {
+            Object[] bound = params == null ? new Object[0] : params.clone();
+            explainer.execute(() -> explain(sql, bound, method, dataSource));
+        }
+    }
+
+    private boolean admit() {
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) return false;
+        long now = System.currentTimeMillis();
+        long start = windowStart.get();
+        if (now - start >= 60_000 && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= maxPerMinute;
+    }
+
+    private static boolean isSelect(String sql) {
+        String s = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return s.startsWith("select") || s.startsWith("with");
+    }
+
+    /** EXPLAIN на отдельном соединении из пула, вне транзакции вызывающего */
+    private void explain(String sql, Object[] params, String method, DataSource dataSource) {
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                StatementCreatorUtils.setParameterValue(ps, i + 1, StatementCreatorUtils.javaTypeToSqlParameterType(
+                        params[i] == null ? null : params[i].getClass()), params[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append('\n').append(rs.getString(1));
+                }
+            }
+            log.warn("EXPLAIN for slow query of {}: {}{}", method, sql, plan);
+        } catch (Exception ex) {
+            log.debug("EXPLAIN failed for {}: {}", sql, ex.getMessage());
+        }
+    }
+}
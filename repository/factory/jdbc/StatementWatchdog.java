@@ -0,0 +1,80 @@
+package com.db.kurs.orm.repository.factory.jdbc;
+
+import com.db.kurs.orm.repository.Deadline;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отмена выполняемых запросов ConnectionScope: раз в PERIOD_MILLIS проверяет запросы в работе
+ * и вызывает Statement.cancel(), если истёк Deadline вызова или поток-владелец прерван.
+ * JDBC query timeout задаётся в целых секундах, поэтому точность срока обеспечивает отмена.
+ */
+@Slf4j
+final class StatementWatchdog {
+    private static final long PERIOD_MILLIS = 10;
+
+    /** запрос в работе: поток-владелец (null — без отмены по прерыванию) и его срок (null — без срока) */
+    private record Watch(Thread owner, Deadline deadline) {
+    }
+
+    private static final Map<Statement, Watch> RUNNING = new ConcurrentHashMap<>();
+    /** запросы потока не отменяются при его прерывании (см. ConnectionScope.detach) */
+    private static final ThreadLocal<Boolean> DETACHED = new ThreadLocal<>();
+    private static volatile ScheduledExecutorService timer;
+
+    private StatementWatchdog() {
+    }
+
+    static void begin(Statement statement) {
+        Thread owner = DETACHED.get() == null ? Thread.currentThread() : null;
+        Deadline deadline = Deadline.current();
+        if (owner == null && deadline == null) return;
+        RUNNING.put(statement, new Watch(owner, deadline));
+        if (timer == null) start();
+    }
+
+    /** @return прежнее значение, для восстановления */
+    static boolean setDetached(boolean detached) {
+        boolean previous = DETACHED.get() != null;
+        if (detached) DETACHED.set(Boolean.TRUE); else DETACHED.remove();
+        return previous;
+    }
+
+    static void end(Statement statement) {
+        RUNNING.remove(statement);
+    }
+
+    private static synchronized void start() {
+        if (timer != null) return;
+        ScheduledExecutorService t = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread th = new Thread(r, "orm-statement-watchdog");
+            th.setDaemon(true);
+            return th;
+        });
+        t.scheduleWithFixedDelay(StatementWatchdog::check, PERIOD_MILLIS, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        timer = t;
+    }
+
+    private static void check() {
+        RUNNING.forEach((statement, watch) -> {
+            boolean interrupted = watch.owner != null && watch.owner.isInterrupted();
+            boolean expired = watch.deadline != null && watch.deadline.isExpired();
+            if (!interrupted && !expired) return;
+            if (!RUNNING.remove(statement, watch)) return;
+            log.debug("Cancelling statement of {}: {}", watch.owner == null ? "detached work" : watch.owner.getName(),
+                    interrupted ? "interrupted" : "deadline passed");
+            try {
+                statement.cancel();
+            } catch (SQLException | RuntimeException ex) {
+                log.debug("Statement cancel failed: {}", ex.toString());
+            }
+        });
+    }
+}
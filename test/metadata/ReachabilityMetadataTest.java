@@ -0,0 +1,74 @@
+package com.db.kurs.orm.metadata;
+
+import com.db.kurs.exception.RepositoryException;
+import com.db.kurs.orm.metadata.fixture.Shelf;
+import com.db.kurs.orm.metadata.fixture.ShelfRepository;
+import com.db.kurs.orm.metadata.fixture.ShelfSummary;
+import com.db.kurs.orm.metadata.fixture.Volume;
+import com.db.kurs.orm.repository.CrudRepository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReachabilityMetadataTest {
+
+    @Test
+    void collectsEntitiesFromRepositoryQueriesAndRelations() {
+        ReachabilityMetadata metadata = ReachabilityMetadata.forRepositories(ShelfRepository.class);
+
+        assertEquals(Set.of(ShelfRepository.class), metadata.getRepositories());
+        assertEquals(Set.of(Shelf.class, Volume.class, ShelfSummary.class), metadata.getEntities());
+    }
+
+    @Test
+    void reflectConfigRegistersEntitiesAndRepositories() {
+        String config = ReachabilityMetadata.forRepositories(ShelfRepository.class).reflectConfig();
+
+        assertTrue(config.contains(entry(Shelf.class, "\"allDeclaredFields\": true", "\"allDeclaredConstructors\": true")), config);
+        assertTrue(config.contains(entry(Volume.class, "\"allDeclaredFields\": true", "\"allDeclaredConstructors\": true")), config);
+        assertTrue(config.contains(entry(ShelfSummary.class, "\"allDeclaredFields\": true",
+                "\"allDeclaredConstructors\": true", "\"allDeclaredMethods\": true")), config);
+        assertTrue(config.contains(entry(ShelfRepository.class, "\"allPublicMethods\": true")), config);
+        assertTrue(config.contains(entry(CrudRepository.class, "\"allPublicMethods\": true")), config);
+        assertFalse(config.contains("\"name\": \"long\""), config);
+    }
+
+    @Test
+    void proxyConfigRegistersRepositoryAndScopedJdbcInterfaces() {
+        String config = ReachabilityMetadata.forRepositories(ShelfRepository.class).proxyConfig();
+
+        assertTrue(config.contains(proxy(ShelfRepository.class)), config);
+        assertTrue(config.contains(proxy(Connection.class)), config);
+        assertTrue(config.contains(proxy(PreparedStatement.class)), config);
+    }
+
+    @Test
+    void writesBothFiles() throws Exception {
+        Path dir = Files.createTempDirectory("reachability");
+        ReachabilityMetadata metadata = ReachabilityMetadata.forRepositories(ShelfRepository.class);
+        metadata.writeTo(dir.resolve("META-INF/native-image/com.example/app"));
+
+        Path out = dir.resolve("META-INF/native-image/com.example/app");
+        assertEquals(metadata.reflectConfig(), Files.readString(out.resolve("reflect-config.json")));
+        assertEquals(metadata.proxyConfig(), Files.readString(out.resolve("proxy-config.json")));
+    }
+
+    @Test
+    void rejectsNonRepositoryTypes() {
+        assertThrows(RepositoryException.class, () -> ReachabilityMetadata.forRepositories(Shelf.class));
+    }
+
+    private static String entry(Class<?> type, String... flags) {
+        return "{\n    \"name\": \"" + type.getName() + "\",\n    " + String.join(",\n    ", flags) + "\n  }";
+    }
+
+    private static String proxy(Class<?> type) {
+        return "{\n    \"interfaces\": [\"" + type.getName() + "\"]\n  }";
+    }
+}
@@ -0,0 +1,24 @@
+package com.db.kurs.orm.metadata.fixture;
+
+import com.db.kurs.orm.annotation.Column;
+import com.db.kurs.orm.annotation.Id;
+import com.db.kurs.orm.annotation.Table;
+import com.db.kurs.orm.annotation.link.OneToMany;
+
+import java.util.List;
+
+@Table(name = "shelf")
+public class Shelf {
+    @Id
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "name")
+    private String name;
+
+    @OneToMany(mappedBy = "shelf")
+    private List<Volume> volumes;
+
+    public Shelf() {
+    }
+}
@@ -0,0 +1,18 @@
+package com.db.kurs.orm.metadata.fixture;
+
+import com.db.kurs.orm.annotation.Param;
+import com.db.kurs.orm.annotation.Query;
+import com.db.kurs.orm.repository.CrudRepository;
+
+import java.util.List;
+
+/** Volume достижим только через связь Shelf.volumes, ShelfSummary — только через @Query */
+public interface ShelfRepository extends CrudRepository<Shelf, Long> {
+
+    @Query("SELECT s.name AS name, COUNT(v.id) AS volumes FROM shelf s "
+            + "LEFT JOIN volume v ON v.shelf_id = s.id WHERE s.name LIKE :prefix GROUP BY s.name")
+    List<ShelfSummary> summaries(@Param("prefix") String prefix);
+
+    @Query("SELECT id FROM shelf ORDER BY id")
+    long[] ids();
+}
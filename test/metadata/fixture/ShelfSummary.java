@@ -0,0 +1,8 @@
+package com.db.kurs.orm.metadata.fixture;
+
+import com.db.kurs.orm.annotation.Column;
+
+/** проекция @Query: record, создаётся каноническим конструктором */
+public record ShelfSummary(@Column(name = "name") String name,
+                           @Column(name = "volumes") long volumes) {
+}
@@ -0,0 +1,24 @@
+package com.db.kurs.orm.metadata.fixture;
+
+import com.db.kurs.orm.annotation.Column;
+import com.db.kurs.orm.annotation.Id;
+import com.db.kurs.orm.annotation.Table;
+import com.db.kurs.orm.annotation.link.JoinColumn;
+import com.db.kurs.orm.annotation.link.ManyToOne;
+
+@Table(name = "volume")
+public class Volume {
+    @Id
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "title")
+    private String title;
+
+    @ManyToOne
+    @JoinColumn(name = "shelf_id", referencedColumnName = "id")
+    private Shelf shelf;
+
+    public Volume() {
+    }
+}
@@ -0,0 +1,128 @@
+package com.db.kurs.orm.repository.factory.jdbc;
+
+import com.db.kurs.orm.annotation.Column;
+import com.db.kurs.orm.annotation.Id;
+import com.db.kurs.orm.annotation.Table;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.repository.CrudRepository;
+import com.db.kurs.orm.repository.factory.RepositoryFactoryBean;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** чтение с реплики и запись на primary на двух встроенных H2 */
+class ReplicaRouterTest {
+
+    @Table(name = "account")
+    public static class Account {
+        @Id
+        @Column(name = "id")
+        public Long id;
+
+        @Column(name = "name")
+        public String name;
+
+        public Account() {
+        }
+
+        Account(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    public interface AccountRepository extends CrudRepository<Account, Long> {
+    }
+
+    /** DataSource со счётчиком выданных соединений; строка 1 называется по базе */
+    private static final class Database extends DelegatingDataSource {
+        final AtomicInteger connections = new AtomicInteger();
+        final JdbcTemplate jdbc;
+
+        Database(String name) {
+            super(new DriverManagerDataSource("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"));
+            this.jdbc = new JdbcTemplate(this);
+            jdbc.execute("CREATE TABLE account (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(50))");
+            jdbc.update("INSERT INTO account (id, name) VALUES (1, ?)", name);
+            jdbc.execute("ALTER TABLE account ALTER COLUMN id RESTART WITH 100");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            connections.incrementAndGet();
+            return super.getConnection();
+        }
+
+        long rows() {
+            return jdbc.queryForObject("SELECT COUNT(*) FROM account", Long.class);
+        }
+    }
+
+    private final Database primary = new Database("primary");
+    private final Database replica = new Database("replica");
+    private final AccountRepository repository = new RepositoryFactoryBean<>(AccountRepository.class,
+            primary.jdbc, List.of(replica), new EntityMapper()).getObject();
+
+    @Test
+    void readsGoToTheReplica() {
+        primary.connections.set(0);
+
+        assertEquals("replica", repository.findById(1L).name);
+        assertEquals(1, repository.findAll().size());
+
+        assertEquals(0, primary.connections.get());
+    }
+
+    @Test
+    void writesGoToThePrimary() {
+        Account first = repository.findById(1L);
+        replica.connections.set(0);
+
+        repository.create(new Account(null, "written"));
+        first.name = "renamed";
+        repository.update(first);
+
+        assertEquals(0, replica.connections.get());
+        assertEquals("renamed", primary.jdbc.queryForObject("SELECT name FROM account WHERE id = 1", String.class));
+        assertEquals(2, primary.rows());
+        assertEquals(1, replica.rows());
+        assertEquals("replica", replica.jdbc.queryForObject("SELECT name FROM account WHERE id = 1", String.class));
+    }
+
+    @Test
+    void readsInsideATransactionGoToThePrimary() {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(primary));
+
+        String name = tx.execute(status -> repository.findById(1L).name);
+
+        assertEquals("primary", name);
+        assertEquals("replica", repository.findById(1L).name);
+    }
+
+    @Test
+    void readsInsideAConnectionScopeStayOnTheReplica() {
+        ConnectionScope scope = ConnectionScope.open(primary);
+        try {
+            assertNotNull(TransactionSynchronizationManager.getResource(primary));
+            primary.connections.set(0);
+
+            assertEquals("replica", repository.findById(1L).name);
+            assertEquals(1, repository.findAll().size());
+            assertEquals(0, primary.connections.get());
+        } finally {
+            scope.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.db.kurs.orm.repository.factory.jdbc;
+
+import com.db.kurs.orm.annotation.Column;
+import com.db.kurs.orm.annotation.Id;
+import com.db.kurs.orm.annotation.Table;
+import com.db.kurs.orm.mapper.EntityMapper;
+import com.db.kurs.orm.repository.CrudRepository;
+import com.db.kurs.orm.repository.factory.RepositoryFactoryBean;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** маршрутизация по @Id на двух встроенных H2 */
+class ShardRouterTest {
+
+    @Table(name = "account")
+    public static class Account {
+        @Id
+        @Column(name = "id")
+        public Long id;
+
+        @Column(name = "name")
+        public String name;
+
+        public Account() {
+        }
+
+        Account(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    public interface AccountRepository extends CrudRepository<Account, Long> {
+    }
+
+    /** DataSource шарда со счётчиком выданных соединений */
+    private static final class Shard extends DelegatingDataSource {
+        final AtomicInteger connections = new AtomicInteger();
+        final JdbcTemplate jdbc;
+
+        Shard() {
+            super(new DriverManagerDataSource("jdbc:h2:mem:shard-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"));
+            this.jdbc = new JdbcTemplate(this);
+            jdbc.execute("CREATE TABLE account (id BIGINT PRIMARY KEY, name VARCHAR(50))");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            connections.incrementAndGet();
+            return super.getConnection();
+        }
+
+        boolean contains(long id) {
+            return jdbc.queryForObject("SELECT COUNT(*) FROM account WHERE id = ?", Long.class, id) == 1;
+        }
+    }
+
+    private final Shard first = new Shard();
+    private final Shard second = new Shard();
+    private final AccountRepository repository = new RepositoryFactoryBean<>(AccountRepository.class,
+            List.of(first.jdbc, second.jdbc), new EntityMapper()).getObject();
+
+    @Test
+    void createWritesEachRowToExactlyOneShard() {
+        for (long id = 1; id <= 20; id++) repository.create(new Account(id, "a" + id));
+
+        for (long id = 1; id <= 20; id++) {
+            assertTrue(first.contains(id) ^ second.contains(id), "row " + id + " must live on one shard");
+        }
+        long onFirst = first.jdbc.queryForObject("SELECT COUNT(*) FROM account", Long.class);
+        assertTrue(onFirst > 0 && onFirst < 20, "rows must be spread over both shards");
+    }
+
+    @Test
+    void findByIdAndDeleteGoOnlyToTheOwningShard() {
+        repository.create(new Account(7L, "seven"));
+        Shard owner = first.contains(7) ? first : second;
+        Shard other = owner == first ? second : first;
+
+        owner.connections.set(0);
+        other.connections.set(0);
+        assertEquals("seven", repository.findById(7L).name);
+        assertTrue(repository.existsById(7L));
+        repository.delete(7L);
+
+        assertTrue(owner.connections.get() > 0);
+        assertEquals(0, other.connections.get());
+        assertFalse(owner.contains(7));
+        assertNull(repository.findById(7L));
+    }
+
+    @Test
+    void findAllByIdMergesRowsFromBothShards() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            repository.create(new Account(id, "a" + id));
+            ids.add(10 - id + 1);
+        }
+        assertTrue(ids.stream().anyMatch(first::contains) && ids.stream().anyMatch(second::contains),
+                "ids must span both shards");
+
+        List<Account> found = repository.findAllById(ids, true);
+
+        assertEquals(ids, found.stream().map(a -> a.id).toList());
+        assertEquals(10, repository.findAllById(ids).size());
+    }
+}